@@ -0,0 +1,75 @@
+package com.github.azahnen.dagger;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps everything the compiler and the processor write in memory, so that the benchmarks do not
+ * measure the file system.
+ */
+class InMemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+    private final Map<String, Object> outputs;
+
+    InMemoryFileManager(JavaFileManager fileManager) {
+        super(fileManager);
+        this.outputs = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return the number of written files
+     */
+    int getOutputs() {
+        return outputs.size();
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(
+            Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+        return new Output(URI.create("mem:///" + location.getName() + "/" + className.replace('.', '/') + kind.extension), kind);
+    }
+
+    @Override
+    public FileObject getFileForOutput(
+            Location location, String packageName, String relativeName, FileObject sibling) {
+        String path = packageName.isEmpty() ? relativeName : packageName.replace('.', '/') + "/" + relativeName;
+
+        return new Output(URI.create("mem:///" + location.getName() + "/" + path), JavaFileObject.Kind.OTHER);
+    }
+
+    private class Output extends SimpleJavaFileObject {
+
+        Output(URI uri, Kind kind) {
+            super(uri, kind);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            outputs.put(toUri().toString(), outputStream);
+            return outputStream;
+        }
+
+        @Override
+        public Writer openWriter() {
+            StringWriter writer = new StringWriter();
+            outputs.put(toUri().toString(), writer);
+            return writer;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return String.valueOf(outputs.get(toUri().toString()));
+        }
+    }
+}
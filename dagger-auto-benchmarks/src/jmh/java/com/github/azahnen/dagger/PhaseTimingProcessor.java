@@ -0,0 +1,111 @@
+package com.github.azahnen.dagger;
+
+import com.github.azahnen.dagger.annotations.AutoBind;
+import com.github.azahnen.dagger.annotations.AutoModule;
+import com.github.azahnen.dagger.annotations.AutoMultiBind;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the same pipeline as the {@link DaggerAutoProcessor} with the default options and measures
+ * the time and the allocated bytes of the parse, compile and write phases separately.
+ */
+class PhaseTimingProcessor extends AbstractProcessor {
+
+    private static final Set<Class<? extends Annotation>> SUPPORTED_ANNOTATIONS =
+            Set.of(AutoBind.class, AutoMultiBind.class, AutoModule.class);
+
+    private final SourceEmitter emitter;
+    private DaggerAutoParser parser;
+    private DaggerAutoCompiler compiler;
+
+    long parseNanos;
+    long compileNanos;
+    long writeNanos;
+    long allocatedBytes;
+
+    PhaseTimingProcessor() {
+        this.emitter = new SourceEmitter();
+    }
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+
+        Map<Class<? extends Annotation>, TypeElement> annotationTypes = new HashMap<>();
+        SUPPORTED_ANNOTATIONS.forEach(
+                annotation ->
+                        annotationTypes.put(
+                                annotation,
+                                processingEnv.getElementUtils().getTypeElement(annotation.getCanonicalName())));
+
+        this.parser = new DaggerAutoParser(annotationTypes, processingEnv, ProcessorStats.DISABLED);
+        this.compiler = new DaggerAutoCompiler();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return SUPPORTED_ANNOTATIONS.stream().map(Class::getCanonicalName).collect(Collectors.toSet());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latest();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+
+        List<Module> modules = parser.parse(annotations, roundEnvironment);
+        long parsed = System.nanoTime();
+
+        Map<String, SourceFile> files = compiler.compile(modules);
+        long compiled = System.nanoTime();
+
+        files.forEach(
+                (name, source) -> {
+                    try (Writer writer =
+                                 processingEnv.getFiler()
+                                         .createSourceFile(name, source.originatingElements.toArray(new Element[0]))
+                                         .openWriter()) {
+                        emitter.emit(source, writer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        long written = System.nanoTime();
+
+        parseNanos += parsed - start;
+        compileNanos += compiled - parsed;
+        writeNanos += written - compiled;
+        allocatedBytes += allocatedBytes() - allocated;
+
+        return true;
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far, the compiler runs the processor on
+     * the calling thread
+     */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.azahnen.dagger;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.processing.Processor;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the processor on synthetic projects of different sizes with the in-process compiler and
+ * {@code -proc:only}. {@link #process} measures a whole compilation with the {@link
+ * DaggerAutoProcessor}, {@link #phases} additionally reports the time and the allocated bytes per
+ * binding of the parse, compile and write phases, so that phases that do not scale linearly stand
+ * out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class ProcessorBenchmark {
+
+    /** number of {@code @AutoBind} classes */
+    @Param({"1000", "10000", "50000"})
+    public int bindings;
+
+    @Param({"100"})
+    public int classesPerPackage;
+
+    /** number of interfaces in the hierarchy of every class */
+    @Param({"3"})
+    public int depth;
+
+    @Param({"true"})
+    public boolean diamonds;
+
+    private JavaCompiler javac;
+    private List<JavaFileObject> sources;
+    private int autoBindClasses;
+
+    /**
+     * Phase timings of the last invocation, normalized per binding.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Phases {
+        public double parseNanosPerBinding;
+        public double compileNanosPerBinding;
+        public double writeNanosPerBinding;
+        public double allocatedBytesPerBinding;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            parseNanosPerBinding = 0;
+            compileNanosPerBinding = 0;
+            writeNanosPerBinding = 0;
+            allocatedBytesPerBinding = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void generate() {
+        this.javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            throw new IllegalStateException("No system Java compiler available, a JDK is required");
+        }
+
+        SyntheticSources syntheticSources =
+                new SyntheticSources(Math.max(bindings / classesPerPackage, 1), classesPerPackage, depth, diamonds);
+        this.sources = syntheticSources.generate();
+        this.autoBindClasses = syntheticSources.getBindings();
+    }
+
+    @Benchmark
+    public int process() throws IOException {
+        return compile(new DaggerAutoProcessor());
+    }
+
+    @Benchmark
+    public int phases(Phases phases) throws IOException {
+        PhaseTimingProcessor processor = new PhaseTimingProcessor();
+        int outputs = compile(processor);
+
+        phases.parseNanosPerBinding += (double) processor.parseNanos / autoBindClasses;
+        phases.compileNanosPerBinding += (double) processor.compileNanos / autoBindClasses;
+        phases.writeNanosPerBinding += (double) processor.writeNanos / autoBindClasses;
+        phases.allocatedBytesPerBinding += (double) processor.allocatedBytes / autoBindClasses;
+
+        return outputs;
+    }
+
+    /**
+     * @return the number of generated files
+     */
+    private int compile(Processor processor) throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        try (StandardJavaFileManager standardFileManager = javac.getStandardFileManager(diagnostics, null, null);
+             InMemoryFileManager fileManager = new InMemoryFileManager(standardFileManager)) {
+            JavaCompiler.CompilationTask task =
+                    javac.getTask(
+                            null,
+                            fileManager,
+                            diagnostics,
+                            List.of("-proc:only", "-classpath", System.getProperty("java.class.path")),
+                            null,
+                            sources);
+            task.setProcessors(List.of(processor));
+
+            if (!task.call()) {
+                throw new IllegalStateException("Compilation failed: " + diagnostics.getDiagnostics());
+            }
+
+            return fileManager.getOutputs();
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.github.azahnen.dagger;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.inject.Provider;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures the runtime cost of the generated wiring. The same synthetic project is compiled with
+ * the {@link DaggerAutoProcessor} and the Dagger processor, either with plain modules or with every
+ * package encapsulated, where the bindings are provided through a wrapper module that delegates to
+ * a separate component per package. All {@code @AutoBind} classes are singletons in both forms, so
+ * the graphs are equivalent.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class RuntimeBenchmark {
+
+    /**
+     * Path of the DaggerAutoProcessor and the Dagger processor, set by the build from the {@code
+     * jmhAnnotationProcessor} configuration.
+     */
+    static final String PROCESSOR_PATH = "dagger.auto.benchmarks.processorPath";
+
+    private static final String PLAIN = "plain";
+    private static final String ENCAPSULATED = "encapsulated";
+    private static final int RETAINED_COMPONENTS = 10;
+
+    @Param({PLAIN, ENCAPSULATED})
+    public String wiring;
+
+    /** number of {@code @AutoBind} classes */
+    @Param({"1000", "10000"})
+    public int bindings;
+
+    @Param({"100"})
+    public int classesPerPackage;
+
+    /** number of interfaces in the hierarchy of every class */
+    @Param({"3"})
+    public int depth;
+
+    private Path output;
+    private URLClassLoader classLoader;
+    private RuntimeWiring runtimeWiring;
+    private Provider<?> provider;
+    private int autoBindClasses;
+
+    /**
+     * Heap retained by a component with all bindings injected, normalized per binding.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+        public double retainedBytesPerBinding;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytesPerBinding = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void compile() throws IOException, ReflectiveOperationException {
+        if (!Objects.equals(wiring, PLAIN) && !Objects.equals(wiring, ENCAPSULATED)) {
+            throw new IllegalStateException("Unknown wiring " + wiring);
+        }
+        String processorPath = System.getProperty(PROCESSOR_PATH);
+        if (processorPath == null) {
+            throw new IllegalStateException("System property " + PROCESSOR_PATH + " is not set");
+        }
+
+        SyntheticSources syntheticSources =
+                new SyntheticSources(
+                        Math.max(bindings / classesPerPackage, 1),
+                        classesPerPackage,
+                        depth,
+                        true,
+                        Objects.equals(wiring, ENCAPSULATED) ? 1 : 0,
+                        false,
+                        true);
+        this.autoBindClasses = syntheticSources.getBindings();
+
+        List<JavaFileObject> sources = new ArrayList<>(syntheticSources.generate());
+        sources.add(generateComponent(syntheticSources));
+        sources.add(generateWiring(syntheticSources));
+
+        this.output = Files.createTempDirectory("dagger-auto-benchmarks");
+        Path generated = Files.createDirectories(output.resolve("generated"));
+        Path classes = Files.createDirectories(output.resolve("classes"));
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            throw new IllegalStateException("No system Java compiler available, a JDK is required");
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+        try (StandardJavaFileManager fileManager = javac.getStandardFileManager(diagnostics, null, null)) {
+            JavaCompiler.CompilationTask task =
+                    javac.getTask(
+                            null,
+                            fileManager,
+                            diagnostics,
+                            List.of(
+                                    "-d", classes.toString(),
+                                    "-s", generated.toString(),
+                                    "-classpath", System.getProperty("java.class.path"),
+                                    "-processorpath", processorPath),
+                            null,
+                            sources);
+
+            if (!task.call()) {
+                throw new IllegalStateException("Compilation failed: " + diagnostics.getDiagnostics());
+            }
+        }
+
+        this.classLoader = new URLClassLoader(new URL[] {classes.toUri().toURL()}, getClass().getClassLoader());
+        this.runtimeWiring =
+                (RuntimeWiring) classLoader.loadClass("bench.Wiring").getConstructor().newInstance();
+        this.provider = runtimeWiring.provider(runtimeWiring.createComponent());
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        classLoader.close();
+
+        try (Stream<Path> files = Files.walk(output)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object createComponent() {
+        return runtimeWiring.createComponent();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object firstInjection() {
+        Object component = runtimeWiring.createComponent();
+        runtimeWiring.injectAll(component);
+
+        return component;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object providerGet() {
+        return provider.get();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object retainedHeap(Heap heap) {
+        long before = usedHeap();
+        Object[] components = new Object[RETAINED_COMPONENTS];
+
+        for (int i = 0; i < components.length; i++) {
+            components[i] = runtimeWiring.createComponent();
+            runtimeWiring.injectAll(components[i]);
+        }
+
+        long after = usedHeap();
+        heap.retainedBytesPerBinding +=
+                (double) (after - before) / RETAINED_COMPONENTS / autoBindClasses;
+
+        return components;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static JavaFileObject generateComponent(SyntheticSources syntheticSources) {
+        List<String> packageNames = syntheticSources.getPackageNames();
+        String last = syntheticSources.getLastInterface();
+        StringBuilder component = new StringBuilder();
+
+        component.append("package bench;\n\n")
+                .append("@jakarta.inject.Singleton\n")
+                .append("@dagger.Component(modules = {")
+                .append(
+                        packageNames.stream()
+                                .map(packageName -> packageName + ".AutoBindings.class")
+                                .collect(Collectors.joining(", ")))
+                .append("})\n")
+                .append("public interface AppComponent {\n");
+        packageNames.forEach(
+                packageName ->
+                        component.append(String.format("  %s.%s %s();\n", packageName, last, packageName)));
+        component.append(String.format("  javax.inject.Provider<%s.%s> provider();\n", packageNames.get(0), last))
+                .append("}\n");
+
+        return SyntheticSources.source("bench", "AppComponent", component.toString());
+    }
+
+    private static JavaFileObject generateWiring(SyntheticSources syntheticSources) {
+        StringBuilder wiring = new StringBuilder();
+
+        wiring.append("package bench;\n\n")
+                .append("public final class Wiring implements com.github.azahnen.dagger.RuntimeWiring {\n")
+                .append("  public Object createComponent() {\n")
+                .append("    return DaggerAppComponent.create();\n")
+                .append("  }\n")
+                .append("  public void injectAll(Object component) {\n")
+                .append("    AppComponent appComponent = (AppComponent) component;\n");
+        syntheticSources.getPackageNames()
+                .forEach(packageName -> wiring.append(String.format("    appComponent.%s();\n", packageName)));
+        wiring.append("  }\n")
+                .append("  public javax.inject.Provider<?> provider(Object component) {\n")
+                .append("    return ((AppComponent) component).provider();\n")
+                .append("  }\n")
+                .append("}\n");
+
+        return SyntheticSources.source("bench", "Wiring", wiring.toString());
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.azahnen.dagger;
+
+import javax.inject.Provider;
+
+/**
+ * Access to a component that is generated and compiled by the {@link RuntimeBenchmark}, so that
+ * the benchmarks do not have to use reflection.
+ */
+public interface RuntimeWiring {
+
+    /**
+     * @return a new instance of the component
+     */
+    Object createComponent();
+
+    /**
+     * Requests all entry points of the given component, which together depend on every binding.
+     */
+    void injectAll(Object component);
+
+    /**
+     * @return the provider for the entry point of the first package of the given component
+     */
+    Provider<?> provider(Object component);
+}
@@ -0,0 +1,218 @@
+package com.github.azahnen.dagger;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Generates the sources of a synthetic project for the benchmarks. Every package contains a number
+ * of {@code @AutoBind} classes, each with its own interface hierarchy, a set multibinding with
+ * contributions from every 5th class and an assisted factory that is injected into every 10th
+ * class. By default every 4th package is an encapsulated {@code @AutoModule}, the others also have
+ * a string map multibinding with contributions from every 7th class, since encapsulated modules do
+ * not support map multibindings.
+ */
+class SyntheticSources {
+
+    private final int packages;
+    private final int classesPerPackage;
+    private final int depth;
+    private final boolean diamonds;
+    private final int encapsulateEvery;
+    private final boolean maps;
+    private final boolean singletons;
+
+    /**
+     * @param packages number of packages
+     * @param classesPerPackage number of {@code @AutoBind} classes per package
+     * @param depth number of interfaces in the hierarchy of every class, at least 1
+     * @param diamonds if true, the hierarchy of every class also contains a diamond
+     */
+    SyntheticSources(int packages, int classesPerPackage, int depth, boolean diamonds) {
+        this(packages, classesPerPackage, depth, diamonds, 4, true, false);
+    }
+
+    /**
+     * @param encapsulateEvery every n-th package is encapsulated, 0 for none
+     * @param maps if true, packages that are not encapsulated have a map multibinding
+     * @param singletons if true, the {@code @AutoBind} classes are singletons
+     */
+    SyntheticSources(
+            int packages, int classesPerPackage, int depth, boolean diamonds, int encapsulateEvery,
+            boolean maps, boolean singletons) {
+        this.packages = packages;
+        this.classesPerPackage = classesPerPackage;
+        this.depth = Math.max(depth, 1);
+        this.diamonds = diamonds;
+        this.encapsulateEvery = encapsulateEvery;
+        this.maps = maps;
+        this.singletons = singletons;
+    }
+
+    /**
+     * @return the number of {@code @AutoBind} classes
+     */
+    int getBindings() {
+        return packages * classesPerPackage;
+    }
+
+    List<String> getPackageNames() {
+        List<String> packageNames = new ArrayList<>();
+
+        for (int i = 0; i < packages; i++) {
+            packageNames.add("p" + i);
+        }
+
+        return packageNames;
+    }
+
+    /**
+     * @return the simple name of the interface of the last class in every package, which depends on
+     * all other classes of the package
+     */
+    String getLastInterface() {
+        return "Svc" + (classesPerPackage - 1);
+    }
+
+    List<JavaFileObject> generate() {
+        List<JavaFileObject> sources = new ArrayList<>();
+
+        for (int i = 0; i < packages; i++) {
+            generatePackage("p" + i, encapsulateEvery > 0 && i % encapsulateEvery == 0, sources);
+        }
+
+        return sources;
+    }
+
+    private void generatePackage(String pkg, boolean encapsulate, List<JavaFileObject> sources) {
+        if (encapsulate) {
+            sources.add(
+                    source(
+                            pkg,
+                            "package-info",
+                            "@com.github.azahnen.dagger.annotations.AutoModule(encapsulate = true)\n"
+                                    + "package " + pkg + ";\n"));
+        }
+
+        sources.add(
+                source(
+                        pkg,
+                        "Plugin",
+                        header(pkg)
+                                + "@com.github.azahnen.dagger.annotations.AutoMultiBind\n"
+                                + "public interface Plugin {}\n"));
+        if (maps && !encapsulate) {
+            sources.add(
+                    source(
+                            pkg,
+                            "Handler",
+                            header(pkg)
+                                    + "@com.github.azahnen.dagger.annotations.AutoMultiBind("
+                                    + "com.github.azahnen.dagger.annotations.AutoMultiBind.Type.STRING_MAP)\n"
+                                    + "public interface Handler {}\n"));
+        }
+        sources.add(
+                source(
+                        pkg,
+                        "Product",
+                        header(pkg)
+                                + "public class Product {\n"
+                                + "  @dagger.assisted.AssistedInject\n"
+                                + "  Product(@dagger.assisted.Assisted String name, Svc0 svc) {}\n"
+                                + "}\n"));
+        sources.add(
+                source(
+                        pkg,
+                        "ProductFactory",
+                        header(pkg)
+                                + "@dagger.assisted.AssistedFactory\n"
+                                + "public interface ProductFactory {\n"
+                                + "  Product create(String name);\n"
+                                + "}\n"));
+
+        for (int j = 0; j < classesPerPackage; j++) {
+            generateClass(pkg, j, maps && !encapsulate && j % 7 == 0, sources);
+        }
+    }
+
+    private void generateClass(String pkg, int j, boolean handler, List<JavaFileObject> sources) {
+        String svc = "Svc" + j;
+
+        for (int level = 1; level < depth; level++) {
+            String parent = level + 1 < depth ? " extends " + svc + "L" + (level + 1) : "";
+            sources.add(
+                    source(pkg, svc + "L" + level, header(pkg) + "public interface " + svc + "L" + level + parent + " {}\n"));
+        }
+
+        StringJoiner parents = new StringJoiner(", ", " extends ", "").setEmptyValue("");
+        if (depth > 1) {
+            parents.add(svc + "L1");
+        }
+        if (diamonds) {
+            String diamond = svc + "D";
+            sources.add(
+                    source(
+                            pkg,
+                            diamond,
+                            header(pkg)
+                                    + "public interface " + diamond + (depth > 1 ? " extends " + svc + "L1" : "") + " {}\n"));
+            parents.add(diamond);
+        }
+        sources.add(source(pkg, svc, header(pkg) + "public interface " + svc + parents + " {}\n"));
+
+        StringJoiner interfaces = new StringJoiner(", ");
+        interfaces.add(svc);
+        if (j % 5 == 0) {
+            interfaces.add("Plugin");
+        }
+        if (handler) {
+            interfaces.add("Handler");
+        }
+
+        StringJoiner parameters = new StringJoiner(", ");
+        if (j > 0) {
+            parameters.add("Svc" + (j - 1) + " previous");
+        }
+        if (j % 10 == 1) {
+            parameters.add("ProductFactory productFactory");
+        }
+        if (j % 5 == 2) {
+            parameters.add("java.util.Set<Plugin> plugins");
+        }
+
+        String annotation =
+                handler
+                        ? "@com.github.azahnen.dagger.annotations.AutoBind(mapKeyString = \"h" + j + "\")\n"
+                        : "@com.github.azahnen.dagger.annotations.AutoBind\n";
+
+        sources.add(
+                source(
+                        pkg,
+                        svc + "Impl",
+                        header(pkg)
+                                + annotation
+                                + (singletons ? "@jakarta.inject.Singleton\n" : "")
+                                + "public class " + svc + "Impl implements " + interfaces + " {\n"
+                                + "  @jakarta.inject.Inject\n"
+                                + "  " + svc + "Impl(" + parameters + ") {}\n"
+                                + "}\n"));
+    }
+
+    private static String header(String pkg) {
+        return "package " + pkg + ";\n\n";
+    }
+
+    static JavaFileObject source(String pkg, String name, String content) {
+        return new SimpleJavaFileObject(
+                URI.create("string:///" + pkg + "/" + name + JavaFileObject.Kind.SOURCE.extension),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+}
@@ -0,0 +1,386 @@
+package com.github.azahnen.dagger;
+
+import com.github.azahnen.dagger.annotations.AutoBind;
+import com.github.azahnen.dagger.annotations.AutoModule;
+import com.github.azahnen.dagger.annotations.AutoMultiBind;
+import com.github.azahnen.dagger.annotations.AutoMultiBind.Type;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Decodes {@link AutoBind}, {@link AutoMultiBind} and {@link AutoModule} into immutable records.
+ * The annotation mirrors of every element are scanned at most once per round. For types from jars,
+ * {@link AutoMultiBind} is also kept in the {@link LibraryTypeCache} across compilations.
+ */
+class AutoAnnotations {
+
+    static final class Bind {
+        final List<TypeElement> interfaces;
+        final Optional<String> mapKeyString;
+        final Optional<String> mapKeyClass;
+        final Optional<String> mapKeyEnum;
+        final int priority;
+
+        Bind(List<TypeElement> interfaces, Optional<String> mapKeyString, Optional<String> mapKeyClass,
+             Optional<String> mapKeyEnum, int priority) {
+            this.interfaces = interfaces;
+            this.mapKeyString = mapKeyString;
+            this.mapKeyClass = mapKeyClass;
+            this.mapKeyEnum = mapKeyEnum;
+            this.priority = priority;
+        }
+    }
+
+    static final class MultiBind {
+        final Type type;
+        final boolean lazy;
+        final boolean providers;
+        final Optional<String> enumKey;
+        final List<TypeElement> exclude;
+
+        MultiBind(Type type, boolean lazy, boolean providers, Optional<String> enumKey, List<TypeElement> exclude) {
+            this.type = type;
+            this.lazy = lazy;
+            this.providers = providers;
+            this.enumKey = enumKey;
+            this.exclude = exclude;
+        }
+    }
+
+    static final class ModuleDef {
+        final Optional<String> pkg;
+        final Optional<String> name;
+        final boolean single;
+        final boolean encapsulate;
+        final List<TypeElement> multiBindings;
+
+        ModuleDef(Optional<String> pkg, Optional<String> name, boolean single, boolean encapsulate,
+                  List<TypeElement> multiBindings) {
+            this.pkg = pkg;
+            this.name = name;
+            this.single = single;
+            this.encapsulate = encapsulate;
+            this.multiBindings = multiBindings;
+        }
+    }
+
+    /**
+     * {@link Decoded} with all class values as names, which can be cached across compilations. The
+     * records hold empty lists instead of the class values.
+     */
+    private static final class LibraryDecoded {
+        final Optional<Bind> bind;
+        final Optional<MultiBind> multiBind;
+        final Optional<ModuleDef> module;
+        final List<String> bindInterfaces;
+        final List<String> multiBindExclude;
+        final List<String> moduleMultiBindings;
+
+        LibraryDecoded(Decoded decoded) {
+            this.bind = decoded.bind.map(bind -> new Bind(List.of(), bind.mapKeyString, bind.mapKeyClass, bind.mapKeyEnum, bind.priority));
+            this.multiBind =
+                    decoded.multiBind.map(
+                            multiBind ->
+                                    new MultiBind(
+                                            multiBind.type, multiBind.lazy, multiBind.providers, multiBind.enumKey, List.of()));
+            this.module =
+                    decoded.module.map(
+                            module -> new ModuleDef(module.pkg, module.name, module.single, module.encapsulate, List.of()));
+            this.bindInterfaces = names(decoded.bind.map(bind -> bind.interfaces));
+            this.multiBindExclude = names(decoded.multiBind.map(multiBind -> multiBind.exclude));
+            this.moduleMultiBindings = names(decoded.module.map(module -> module.multiBindings));
+        }
+
+        private static List<String> names(Optional<List<TypeElement>> typeElements) {
+            return typeElements.orElse(List.of()).stream()
+                    .map(typeElement -> typeElement.getQualifiedName().toString())
+                    .collect(Collectors.toUnmodifiableList());
+        }
+    }
+
+    private static final class Decoded {
+        Optional<Bind> bind = Optional.empty();
+        Optional<MultiBind> multiBind = Optional.empty();
+        Optional<ModuleDef> module = Optional.empty();
+    }
+
+    private final Map<Class<? extends Annotation>, TypeElement> annotationTypes;
+    private final Types types;
+    private final Elements elements;
+    private final LibraryTypeCache libraryTypes;
+    private final Map<Element, Decoded> decoded;
+
+    AutoAnnotations(
+            Map<Class<? extends Annotation>, TypeElement> annotationTypes,
+            Types types,
+            Elements elements,
+            LibraryTypeCache libraryTypes) {
+        this.annotationTypes = annotationTypes;
+        this.types = types;
+        this.elements = elements;
+        this.libraryTypes = libraryTypes;
+        this.decoded = new HashMap<>();
+    }
+
+    Optional<Bind> getAutoBind(Element element) {
+        return decode(element).bind;
+    }
+
+    Optional<MultiBind> getAutoMultiBind(Element element) {
+        return decode(element).multiBind;
+    }
+
+    Optional<ModuleDef> getAutoModule(Element element) {
+        return decode(element).module;
+    }
+
+    private Decoded decode(Element element) {
+        Decoded cached = decoded.get(element);
+
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+
+        Decoded result = libraryTypes.isLibraryType(element) ? decodeLibraryType(element) : decodeMirrors(element);
+
+        decoded.put(element, result);
+
+        return result;
+    }
+
+    private Decoded decodeLibraryType(Element element) {
+        LibraryDecoded cached =
+                libraryTypes.get("autoAnnotations", element, () -> new LibraryDecoded(decodeMirrors(element)));
+        Decoded result = new Decoded();
+
+        result.bind =
+                cached.bind.map(
+                        bind -> new Bind(
+                                resolve(cached.bindInterfaces),
+                                bind.mapKeyString,
+                                bind.mapKeyClass,
+                                bind.mapKeyEnum,
+                                bind.priority));
+        result.multiBind =
+                cached.multiBind.map(
+                        multiBind ->
+                                new MultiBind(
+                                        multiBind.type,
+                                        multiBind.lazy,
+                                        multiBind.providers,
+                                        multiBind.enumKey,
+                                        resolve(cached.multiBindExclude)));
+        result.module =
+                cached.module.map(
+                        module ->
+                                new ModuleDef(
+                                        module.pkg,
+                                        module.name,
+                                        module.single,
+                                        module.encapsulate,
+                                        resolve(cached.moduleMultiBindings)));
+
+        return result;
+    }
+
+    private List<TypeElement> resolve(List<String> names) {
+        List<TypeElement> typeElements = new ArrayList<>();
+
+        for (String name : names) {
+            TypeElement typeElement = elements.getTypeElement(name);
+
+            if (Objects.isNull(typeElement)) {
+                return List.of();
+            }
+            typeElements.add(typeElement);
+        }
+
+        return Collections.unmodifiableList(typeElements);
+    }
+
+    private Decoded decodeMirrors(Element element) {
+        Decoded result = new Decoded();
+
+        for (AnnotationMirror annotationMirror : element.getAnnotationMirrors()) {
+            Element annotationType = annotationMirror.getAnnotationType().asElement();
+
+            if (is(annotationType, AutoBind.class)) {
+                result.bind = Optional.of(decodeBind(annotationMirror));
+            } else if (is(annotationType, AutoMultiBind.class)) {
+                result.multiBind = Optional.of(decodeMultiBind(annotationMirror));
+            } else if (is(annotationType, AutoModule.class)) {
+                result.module = Optional.of(decodeModule(annotationMirror));
+            }
+        }
+
+        return result;
+    }
+
+    private Bind decodeBind(AnnotationMirror annotationMirror) {
+        List<TypeElement> interfaces = List.of();
+        Optional<String> mapKeyString = Optional.empty();
+        Optional<String> mapKeyClass = Optional.empty();
+        Optional<String> mapKeyEnum = Optional.empty();
+        int priority = 0;
+
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                annotationMirror.getElementValues().entrySet()) {
+            Object value = entry.getValue().getValue();
+
+            switch (entry.getKey().getSimpleName().toString()) {
+                case "interfaces":
+                    interfaces = asTypeElements(value);
+                    break;
+                case "mapKeyString":
+                    mapKeyString = asType(value, String.class);
+                    break;
+                case "mapKeyClass":
+                    mapKeyClass = asTypeElement(value).map(typeElement -> typeElement.getQualifiedName().toString());
+                    break;
+                case "mapKeyEnum":
+                    mapKeyEnum = asType(value, String.class);
+                    break;
+                case "priority":
+                    priority = asType(value, Integer.class).orElse(priority);
+                    break;
+            }
+        }
+
+        return new Bind(interfaces, mapKeyString, mapKeyClass, mapKeyEnum, priority);
+    }
+
+    private MultiBind decodeMultiBind(AnnotationMirror annotationMirror) {
+        Type type = Type.SET;
+        boolean lazy = true;
+        boolean providers = false;
+        Optional<String> enumKey = Optional.empty();
+        List<TypeElement> exclude = List.of();
+
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                annotationMirror.getElementValues().entrySet()) {
+            Object value = entry.getValue().getValue();
+
+            switch (entry.getKey().getSimpleName().toString()) {
+                case "value":
+                    type = asEnum(value, Type.class).map(Type::valueOf).orElse(type);
+                    break;
+                case "lazy":
+                    lazy = asType(value, Boolean.class).orElse(lazy);
+                    break;
+                case "providers":
+                    providers = asType(value, Boolean.class).orElse(providers);
+                    break;
+                case "enumKey":
+                    enumKey = asTypeElement(value).map(typeElement -> typeElement.getQualifiedName().toString());
+                    break;
+                case "exclude":
+                    exclude = asTypeElements(value);
+                    break;
+            }
+        }
+
+        return new MultiBind(type, lazy, providers, enumKey, exclude);
+    }
+
+    private ModuleDef decodeModule(AnnotationMirror annotationMirror) {
+        Optional<String> pkg = Optional.empty();
+        Optional<String> name = Optional.empty();
+        boolean single = false;
+        boolean encapsulate = false;
+        List<TypeElement> multiBindings = List.of();
+
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                annotationMirror.getElementValues().entrySet()) {
+            Object value = entry.getValue().getValue();
+
+            switch (entry.getKey().getSimpleName().toString()) {
+                case "pkg":
+                    pkg = asType(value, String.class);
+                    break;
+                case "name":
+                    name = asType(value, String.class);
+                    break;
+                case "single":
+                    single = asType(value, Boolean.class).orElse(single);
+                    break;
+                case "encapsulate":
+                    encapsulate = asType(value, Boolean.class).orElse(encapsulate);
+                    break;
+                case "multiBindings":
+                    multiBindings = asTypeElements(value);
+                    break;
+            }
+        }
+
+        return new ModuleDef(pkg, name, single, encapsulate, multiBindings);
+    }
+
+    private boolean is(Element annotationType, Class<? extends Annotation> annotation) {
+        return Objects.equals(annotationType, annotationTypes.get(annotation));
+    }
+
+    private static <T> Optional<T> asType(Object value, Class<T> type) {
+        return type.isInstance(value) ? Optional.of(type.cast(value)) : Optional.empty();
+    }
+
+    private static Optional<String> asEnum(Object value, Class<? extends Enum<?>> type) {
+        if (value instanceof VariableElement
+                && ((VariableElement) value).getKind() == ElementKind.ENUM_CONSTANT
+                && Objects.equals(
+                ((VariableElement) value).getEnclosingElement().toString(), type.getCanonicalName())) {
+            return Optional.of(((VariableElement) value).getSimpleName().toString());
+        }
+        return Optional.empty();
+    }
+
+    private Optional<TypeElement> asTypeElement(Object value) {
+        if (value instanceof TypeMirror && ((TypeMirror) value).getKind() == TypeKind.DECLARED) {
+            return Optional.of((TypeElement) types.asElement((TypeMirror) value));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return the elements of a class array, or an empty list if any entry cannot be resolved
+     */
+    private List<TypeElement> asTypeElements(Object value) {
+        if (!(value instanceof List)) {
+            return List.of();
+        }
+
+        List<TypeElement> typeElements = new ArrayList<>();
+
+        for (Object annotationValue : (List<?>) value) {
+            Optional<TypeElement> typeElement =
+                    annotationValue instanceof AnnotationValue
+                            ? asTypeElement(((AnnotationValue) annotationValue).getValue())
+                            : Optional.empty();
+
+            if (typeElement.isEmpty()) {
+                return List.of();
+            }
+            typeElements.add(typeElement.get());
+        }
+
+        return Collections.unmodifiableList(typeElements);
+    }
+}
@@ -1,9 +1,13 @@
 package com.github.azahnen.dagger;
 
+import javax.lang.model.element.Element;
+
 public interface Binding {
 
   String getPackage();
 
+  Element getOriginatingElement();
+
   String getInterface();
 
   default String getInterfaceLazy() {
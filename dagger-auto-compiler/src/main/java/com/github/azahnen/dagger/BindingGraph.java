@@ -0,0 +1,125 @@
+package com.github.azahnen.dagger;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.lang.model.element.Element;
+
+/**
+ * Index of the bindings of a single module, built once and shared by all compile steps. Lookups
+ * of bound interfaces are constant time and the injections of all single bindings are
+ * deduplicated up front.
+ */
+class BindingGraph {
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern JAVA_LANG = Pattern.compile("(?<![\\w.$])java\\.lang\\.(?=[A-Z])");
+
+  final Module module;
+  final List<SingleBinding> singleBindings;
+  /** multi bindings declared by this module, without those declared by another compilation */
+  final List<MultiBinding> multiBindings;
+  /** single bindings and local multi bindings in declaration order */
+  final List<Binding> localBindings;
+  /** distinct injections of all single bindings in declaration order */
+  final List<SourceParameter> injections;
+  /** the module element and the elements of all bindings, passed to every generated file */
+  final List<Element> originatingElements;
+
+  private final Set<String> bound;
+  private final Set<String> boundLocal;
+  private final Set<String> interfacesLocal;
+
+  BindingGraph(Module module) {
+    this.module = module;
+    this.singleBindings =
+        module.bindings.stream()
+            .filter(binding -> binding instanceof SingleBinding)
+            .map(binding -> (SingleBinding) binding)
+            .collect(Collectors.toUnmodifiableList());
+    this.localBindings =
+        module.bindings.stream()
+            .filter(
+                binding ->
+                    binding instanceof SingleBinding
+                        || (binding instanceof MultiBinding && !((MultiBinding) binding).foreign))
+            .collect(Collectors.toUnmodifiableList());
+    this.multiBindings =
+        localBindings.stream()
+            .filter(binding -> binding instanceof MultiBinding)
+            .map(binding -> (MultiBinding) binding)
+            .collect(Collectors.toUnmodifiableList());
+
+    Set<SourceParameter> injections = new LinkedHashSet<>();
+    singleBindings.forEach(
+        binding ->
+            binding.injections.forEach(
+                (type, name) -> injections.add(new SourceParameter(type, name))));
+    this.injections = List.copyOf(injections);
+
+    Set<Element> originatingElements = new LinkedHashSet<>();
+    module.element.ifPresent(originatingElements::add);
+    module.bindings.forEach(binding -> originatingElements.add(binding.getOriginatingElement()));
+    this.originatingElements = List.copyOf(originatingElements);
+
+    this.bound = new HashSet<>();
+    this.boundLocal = new HashSet<>();
+    this.interfacesLocal = new HashSet<>();
+    module.bindings.forEach(binding -> addBound(bound, binding));
+    localBindings.forEach(
+        binding -> {
+          addBound(boundLocal, binding);
+          interfacesLocal.add(normalize(binding.getInterface()));
+        });
+  }
+
+  private static void addBound(Set<String> bound, Binding binding) {
+    bound.add(normalize(binding.getInterface()));
+    bound.add(normalize(DaggerAutoCompiler.toLazy(binding.getInterface())));
+  }
+
+  /**
+   * Binding interfaces are formatted by the compiler, injections are printed by javac, so both
+   * are compared without whitespace and with the classes of {@code java.lang} unqualified, e.g.
+   * {@code java.util.Map<java.lang.String,a.Handler>} matches {@code java.util.Map<String,
+   * a.Handler>}.
+   *
+   * @return the normalized type name
+   */
+  static String normalize(String type) {
+    return JAVA_LANG.matcher(WHITESPACE.matcher(type).replaceAll("")).replaceAll("");
+  }
+
+  /**
+   * @return true if the injection, or its lazy variant, is bound by any binding of the module
+   */
+  boolean isBound(String injection) {
+    return bound.contains(normalize(injection));
+  }
+
+  /**
+   * @return true if the injection, or its lazy variant, is bound by a local binding of the module
+   */
+  boolean isBoundLocal(String injection) {
+    return boundLocal.contains(normalize(injection));
+  }
+
+  /**
+   * @return true if the injection is exactly the interface of a local binding of the module
+   */
+  boolean isInterfaceLocal(String injection) {
+    return interfacesLocal.contains(normalize(injection));
+  }
+
+  /**
+   * @return the distinct injections that are multi bindings and not bound in the module
+   */
+  List<SourceParameter> getExternalMultiInjections() {
+    return injections.stream()
+        .filter(injection -> DaggerAutoCompiler.isMulti(injection.type) && !isBound(injection.type))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,216 @@
+package com.github.azahnen.dagger;
+
+import com.github.azahnen.dagger.annotations.AutoMultiBind.Type;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Binary index of the bindings of a compilation in {@code META-INF/dagger-auto/} of the class
+ * output. For every multibinding declared by a module, a small resource named after the interface
+ * is written, so downstream compilations find out with a single classpath lookup whether a
+ * multibinding is already declared in another jar.
+ */
+class BindingIndex {
+
+    static final String MULTI_BINDINGS = "META-INF/dagger-auto/multibinds/";
+
+    private static final int MAGIC = 0xDA99E7A0;
+    private static final byte VERSION = 2;
+
+    /** A multibinding declared by a module of another compilation. */
+    static final class Declaration {
+        final String module;
+        final Type type;
+        final boolean lazy;
+        final boolean providers;
+
+        Declaration(String module, Type type, boolean lazy, boolean providers) {
+            this.module = module;
+            this.type = type;
+            this.lazy = lazy;
+            this.providers = providers;
+        }
+    }
+
+    /** An index resource to write to the class output. */
+    static final class Resource {
+        final String name;
+        final byte[] content;
+        final List<Element> originatingElements;
+
+        Resource(String name, byte[] content, List<Element> originatingElements) {
+            this.name = name;
+            this.content = content;
+            this.originatingElements = originatingElements;
+        }
+    }
+
+    private final Filer filer;
+    private final Map<String, Optional<Declaration>> declarations;
+
+    BindingIndex(Filer filer) {
+        this.filer = filer;
+        this.declarations = new HashMap<>();
+    }
+
+    /**
+     * @return the declaration of the multibinding for the given interface, if it is declared by a
+     * module on the classpath
+     */
+    Optional<Declaration> getForeignMultiBinding(String interfaceFullName) {
+        return declarations.computeIfAbsent(getResourceName(interfaceFullName), this::readDeclaration);
+    }
+
+    private Optional<Declaration> readDeclaration(String resourceName) {
+        try {
+            FileObject resource = filer.getResource(StandardLocation.CLASS_PATH, "", resourceName);
+
+            // a stale index of this compilation does not declare anything foreign
+            if (isOwnOutput(resource, resourceName)) {
+                return Optional.empty();
+            }
+
+            ByteBuffer buffer = map(resource);
+
+            if (buffer.remaining() < 5 || buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                return Optional.empty();
+            }
+
+            String module = readString(buffer);
+            Type type = Type.valueOf(readString(buffer));
+            boolean lazy = buffer.get() != 0;
+            boolean providers = buffer.get() != 0;
+
+            return Optional.of(new Declaration(module, type, lazy, providers));
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private boolean isOwnOutput(FileObject resource, String resourceName) {
+        try {
+            return Objects.equals(
+                    resource.toUri(),
+                    filer.getResource(StandardLocation.CLASS_OUTPUT, "", resourceName).toUri());
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Index files in directories are memory-mapped, those in jars have to be read.
+     */
+    private static ByteBuffer map(FileObject resource) throws IOException {
+        URI uri = resource.toUri();
+
+        if (Objects.equals(uri.getScheme(), "file")) {
+            try (FileChannel channel = FileChannel.open(Paths.get(uri), StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        try (InputStream inputStream = resource.openInputStream()) {
+            return ByteBuffer.wrap(inputStream.readAllBytes());
+        }
+    }
+
+    /**
+     * @return the index resources for the given modules
+     */
+    static List<Resource> encode(List<Module> modules) {
+        List<Resource> resources = new ArrayList<>();
+
+        for (Module module : modules) {
+            List<Element> originatingElements = getOriginatingElements(module);
+            List<MultiBinding> multiBindings =
+                    module.bindings.stream()
+                            .filter(binding -> binding instanceof MultiBinding && !((MultiBinding) binding).foreign)
+                            .map(binding -> (MultiBinding) binding)
+                            .collect(Collectors.toList());
+
+            for (MultiBinding multiBinding : multiBindings) {
+                resources.add(
+                        new Resource(
+                                getResourceName(multiBinding.interfaceFullName),
+                                write(
+                                        out -> {
+                                            writeString(out, module.qualifiedName());
+                                            writeString(out, multiBinding.multiBind.name());
+                                            out.writeBoolean(multiBinding.lazy);
+                                            out.writeBoolean(multiBinding.providers);
+                                        }),
+                                originatingElements));
+            }
+        }
+
+        return resources;
+    }
+
+    private static List<Element> getOriginatingElements(Module module) {
+        Set<Element> elements = new LinkedHashSet<>();
+        module.element.ifPresent(elements::add);
+        module.bindings.forEach(binding -> elements.add(binding.getOriginatingElement()));
+
+        return List.copyOf(elements);
+    }
+
+    private static String getResourceName(String interfaceFullName) {
+        int typeArguments = interfaceFullName.indexOf('<');
+
+        return MULTI_BINDINGS
+                + (typeArguments > 0 ? interfaceFullName.substring(0, typeArguments) : interfaceFullName);
+    }
+
+    private interface Content {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] write(Content content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            content.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,257 @@
+package com.github.azahnen.dagger;
+
+import com.github.azahnen.dagger.annotations.AutoBind;
+import com.github.azahnen.dagger.annotations.AutoModule;
+import com.github.azahnen.dagger.annotations.AutoMultiBind;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Generates the module sources for already compiled classes. All given jars and class directories
+ * are scanned for class files that reference {@link AutoBind}, {@link AutoMultiBind} or {@link
+ * AutoModule} in their constant pool, then the {@link DaggerAutoProcessor} is run on the matching
+ * types with {@code -proc:only}, so nothing is recompiled.
+ *
+ * <pre>
+ * java com.github.azahnen.dagger.DaggerAutoBatch -d &lt;output&gt; [-cp &lt;classpath&gt;] [-A&lt;option&gt;=&lt;value&gt;]... &lt;jar or directory&gt;...
+ * </pre>
+ *
+ * <p>The classpath has to contain everything that is needed to resolve the scanned types, the
+ * scanned entries themselves are added automatically.
+ */
+public class DaggerAutoBatch {
+
+    private static final List<byte[]> ANNOTATION_DESCRIPTORS =
+            Stream.of(AutoBind.class, AutoMultiBind.class, AutoModule.class)
+                    .map(annotation -> "L" + annotation.getName().replace('.', '/') + ";")
+                    .map(descriptor -> descriptor.getBytes(StandardCharsets.UTF_8))
+                    .collect(Collectors.toUnmodifiableList());
+
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String MODULE_INFO = "module-info";
+    private static final String PACKAGE_INFO = "package-info";
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.err));
+    }
+
+    static int run(String[] args, PrintStream log) {
+        Path output = null;
+        List<String> classpath = new ArrayList<>();
+        List<String> options = new ArrayList<>();
+        List<Path> entries = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (Objects.equals(args[i], "-d") && i + 1 < args.length) {
+                output = Paths.get(args[++i]);
+            } else if (Objects.equals(args[i], "-cp") && i + 1 < args.length) {
+                classpath.add(args[++i]);
+            } else if (args[i].startsWith("-A")) {
+                options.add(args[i]);
+            } else if (args[i].startsWith("-")) {
+                return usage(log, "Unknown option " + args[i]);
+            } else {
+                entries.add(Paths.get(args[i]));
+            }
+        }
+
+        if (Objects.isNull(output) || entries.isEmpty()) {
+            return usage(log, "Missing output directory or jars");
+        }
+
+        Set<String> classNames = new TreeSet<>();
+        Set<String> packageNames = new TreeSet<>();
+
+        try {
+            for (Path entry : entries) {
+                scan(entry, classNames, packageNames);
+            }
+            Files.createDirectories(output);
+        } catch (IOException e) {
+            log.println("Could not scan classes: " + e.getMessage());
+            return 1;
+        }
+
+        if (classNames.isEmpty() && packageNames.isEmpty()) {
+            log.println("No annotated classes found");
+            return 0;
+        }
+
+        entries.forEach(entry -> classpath.add(entry.toString()));
+
+        List<String> javacOptions = new ArrayList<>();
+        javacOptions.add("-proc:only");
+        javacOptions.add("-s");
+        javacOptions.add(output.toString());
+        javacOptions.add("-cp");
+        javacOptions.add(String.join(File.pathSeparator, classpath));
+        javacOptions.addAll(options);
+        if (!packageNames.isEmpty()) {
+            javacOptions.add(
+                    String.format("-A%s=%s", DaggerAutoProcessor.OPTION_PACKAGES, String.join(",", packageNames)));
+        }
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+
+        if (Objects.isNull(javac)) {
+            log.println("No system Java compiler available, a JDK is required");
+            return 1;
+        }
+
+        JavaCompiler.CompilationTask task =
+                javac.getTask(new PrintWriter(log, true), null, null, javacOptions, classNames, null);
+        task.setProcessors(List.of(new DaggerAutoProcessor()));
+
+        return task.call() ? 0 : 1;
+    }
+
+    private static int usage(PrintStream log, String message) {
+        log.println(message);
+        log.println(
+                "Usage: DaggerAutoBatch -d <output> [-cp <classpath>] [-A<option>=<value>]... <jar or directory>...");
+        return 2;
+    }
+
+    /**
+     * Adds the names of all top-level types and packages in the given jar or directory that
+     * reference one of the annotations.
+     */
+    static void scan(Path entry, Set<String> classNames, Set<String> packageNames) throws IOException {
+        if (Files.isDirectory(entry)) {
+            try (Stream<Path> files = Files.walk(entry)) {
+                for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                    String path = entry.relativize(file).toString().replace(File.separatorChar, '/');
+
+                    if (isCandidate(path)) {
+                        try (InputStream inputStream = Files.newInputStream(file)) {
+                            addIfAnnotated(classNames, packageNames, path, inputStream);
+                        }
+                    }
+                }
+            }
+        } else {
+            try (ZipFile jar = new ZipFile(entry.toFile())) {
+                Enumeration<? extends ZipEntry> jarEntries = jar.entries();
+
+                while (jarEntries.hasMoreElements()) {
+                    ZipEntry jarEntry = jarEntries.nextElement();
+
+                    if (!jarEntry.isDirectory() && isCandidate(jarEntry.getName())) {
+                        try (InputStream inputStream = jar.getInputStream(jarEntry)) {
+                            addIfAnnotated(classNames, packageNames, jarEntry.getName(), inputStream);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isCandidate(String path) {
+        return path.endsWith(CLASS_SUFFIX)
+                && !path.startsWith("META-INF/")
+                && !path.endsWith(MODULE_INFO + CLASS_SUFFIX);
+    }
+
+    private static void addIfAnnotated(
+            Set<String> classNames, Set<String> packageNames, String path, InputStream inputStream)
+            throws IOException {
+        if (referencesAnnotation(inputStream.readAllBytes())) {
+            String binaryName =
+                    path.substring(0, path.length() - CLASS_SUFFIX.length()).replace('/', '.');
+
+            // javac does not accept package-info as class name, the processor looks them up instead
+            if (binaryName.endsWith("." + PACKAGE_INFO)) {
+                packageNames.add(binaryName.substring(0, binaryName.length() - PACKAGE_INFO.length() - 1));
+                return;
+            }
+
+            int nested = binaryName.indexOf('$');
+
+            // nested types are processed as members of their top-level type
+            classNames.add(nested > 0 ? binaryName.substring(0, nested) : binaryName);
+        }
+    }
+
+    /**
+     * Walks the constant pool of a class file and checks the UTF8 entries for the annotation
+     * descriptors, nothing else is parsed.
+     */
+    static boolean referencesAnnotation(byte[] classFile) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(classFile));
+
+        if (input.readInt() != 0xCAFEBABE) {
+            return false;
+        }
+        input.skipBytes(4);
+
+        int count = input.readUnsignedShort();
+
+        for (int i = 1; i < count; i++) {
+            int tag = input.readUnsignedByte();
+
+            switch (tag) {
+                case 1:
+                    byte[] utf8 = new byte[input.readUnsignedShort()];
+                    input.readFully(utf8);
+                    for (byte[] descriptor : ANNOTATION_DESCRIPTORS) {
+                        if (Arrays.equals(utf8, descriptor)) {
+                            return true;
+                        }
+                    }
+                    break;
+                case 5:
+                case 6:
+                    input.skipBytes(8);
+                    i++;
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    input.skipBytes(4);
+                    break;
+                case 15:
+                    input.skipBytes(3);
+                    break;
+                case 7:
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    input.skipBytes(2);
+                    break;
+                default:
+                    throw new IOException("Invalid constant pool tag " + tag);
+            }
+        }
+
+        return false;
+    }
+}
@@ -1,43 +1,199 @@
 package com.github.azahnen.dagger;
 
-import java.util.AbstractMap.SimpleEntry;
+import com.github.azahnen.dagger.SourceType.Layout;
+import com.github.azahnen.dagger.annotations.AutoMultiBind.Type;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.lang.model.element.Element;
 
 // TODO: methodName -> Binding.getName
-// TODO: README.md, not supported for encapsulate: map multibindings, method + field injections
+// TODO: README.md, not supported for encapsulate: map multibindings without providers, method + field injections
 public class DaggerAutoCompiler {
 
-  Map<String, String> compile(List<Module> modules) {
-    /*modules.forEach(module -> System.out.println(module.moduleName + "\n  - "
-        + module.bindings.stream()
-          .filter(binding -> binding instanceof SingleBinding)
-          .map(binding -> ((SingleBinding)binding).implementationFullName + " " + ((SingleBinding)binding).injections.toString() + " " + ((SingleBinding) binding).multiBindOtherModule)
-          .collect(Collectors.joining("\n  - "))
-        + module.bindings.stream()
-        .filter(binding -> binding instanceof MultiBinding)
-        .map(binding -> ((MultiBinding)binding).interfaceFullName + " MULTI")
-        .collect(Collectors.joining("\n  - "))));*/
-    List<Module> simpleModules =
-        modules.stream().filter(module -> !module.encapsulate).collect(Collectors.toList());
-    List<Module> encapsulatedModules =
-        modules.stream().filter(module -> module.encapsulate).collect(Collectors.toList());
-
-    Map<String, String> files = new LinkedHashMap<>();
-    files.putAll(compileModules(simpleModules, "", false));
-    files.putAll(compileEncapsulated(encapsulatedModules));
+  private static final SourceAnnotation SINGLETON = SourceAnnotation.of("jakarta.inject.Singleton");
+  private static final SourceAnnotation PROVIDES = SourceAnnotation.of("dagger.Provides");
+  private static final SourceAnnotation BINDS = SourceAnnotation.of("dagger.Binds");
+  private static final SourceAnnotation MODULE = SourceAnnotation.of("dagger.Module");
+  private static final SourceAnnotation MULTIBINDS =
+      SourceAnnotation.of("dagger.multibindings.Multibinds");
+  private static final SourceAnnotation ELEMENTS_INTO_SET =
+      SourceAnnotation.of("dagger.multibindings.ElementsIntoSet");
+  private static final SourceAnnotation BINDS_INSTANCE = SourceAnnotation.of("dagger.BindsInstance");
+  private static final String EVENTS = "com.github.azahnen.dagger.jfr.DaggerAutoEvents";
+  static final String LAZY_SET = "com.github.azahnen.dagger.collections.LazySet";
+  private static final String ENUM_MAPS = "com.github.azahnen.dagger.collections.EnumMaps";
+  private static final String PRIORITY_LIST = "com.github.azahnen.dagger.collections.PriorityList";
+
+  private final ForkJoinPool pool;
+  private final int shardSize;
+  private final ProcessorStats stats;
+  private final boolean jfrEvents;
+  private final boolean provisionCounters;
+  private final boolean dispatchers;
+
+  DaggerAutoCompiler() {
+    this(null, 0, ProcessorStats.DISABLED, false, false, false);
+  }
+
+  /**
+   * @param pool if not null, the sources of different modules are generated in parallel on this
+   *     pool
+   * @param shardSize if greater than 0, the single bindings of a module with more bindings are
+   *     split into shard modules of at most this size, which are included by the module
+   * @param stats the phase timings and module statistics are recorded here
+   * @param jfrEvents if true, the generated wrapper modules record JFR events for the creation of
+   *     the encapsulated components and the materialization of external multibindings
+   * @param provisionCounters if true, bindings are generated as {@code @Provides} methods that
+   *     count every provision instead of {@code @Binds} methods
+   * @param dispatchers if true, a {@link SourceDispatcher} or {@link SourceClassDispatcher} is
+   *     generated for every string-keyed or class-keyed multibinding that is declared by a simple
+   *     module
+   */
+  DaggerAutoCompiler(
+      ForkJoinPool pool,
+      int shardSize,
+      ProcessorStats stats,
+      boolean jfrEvents,
+      boolean provisionCounters,
+      boolean dispatchers) {
+    this.pool = pool;
+    this.shardSize = shardSize;
+    this.stats = stats;
+    this.jfrEvents = jfrEvents;
+    this.provisionCounters = provisionCounters;
+    this.dispatchers = dispatchers;
+  }
+
+  Map<String, SourceFile> compile(List<Module> modules) {
+    List<BindingGraph> graphs =
+        stats.time(
+            "compileGraphs",
+            () -> modules.stream().map(BindingGraph::new).collect(Collectors.toList()));
+    List<BindingGraph> simpleModules =
+        graphs.stream().filter(graph -> !graph.module.encapsulate).collect(Collectors.toList());
+    List<BindingGraph> encapsulatedModules =
+        graphs.stream().filter(graph -> graph.module.encapsulate).collect(Collectors.toList());
+
+    Map<String, SourceFile> files = new LinkedHashMap<>();
+    files.putAll(stats.time("compileModules", () -> compileModules(simpleModules, "", false)));
+    files.putAll(stats.time("compileEncapsulated", () -> compileEncapsulated(encapsulatedModules)));
+    if (dispatchers) {
+      Map<String, Map<String, SingleBinding>> mapKeys =
+          stats.time("compileMapKeys", () -> getMapKeys(modules, (binding, previous) -> {}));
+      files.putAll(stats.time("compileDispatchers", () -> compileDispatchers(simpleModules, mapKeys)));
+    }
+
+    return files;
+  }
+
+  /**
+   * Calls the given action for every contribution to a map multibinding of the given modules whose
+   * key is already contributed by another implementation, together with the first contribution of
+   * the key.
+   */
+  static void forEachDuplicateMapKey(
+      List<Module> modules, BiConsumer<SingleBinding, SingleBinding> action) {
+    getMapKeys(modules, action);
+  }
+
+  /**
+   * @return the contributions of this round per map multibinding and key, in the order of the
+   *     modules. Only the first contribution of a key is kept, the others are passed to the given
+   *     action.
+   */
+  private static Map<String, Map<String, SingleBinding>> getMapKeys(
+      List<Module> modules, BiConsumer<SingleBinding, SingleBinding> duplicates) {
+    Map<String, Map<String, SingleBinding>> mapKeys = new LinkedHashMap<>();
+
+    modules.stream()
+        .flatMap(module -> module.bindings.stream())
+        .filter(binding -> binding instanceof SingleBinding)
+        .map(binding -> (SingleBinding) binding)
+        .filter(binding -> binding.multiBindKey.isPresent())
+        .forEach(
+            binding -> {
+              SingleBinding previous =
+                  mapKeys
+                      .computeIfAbsent(binding.interfaceFullName, ignore -> new LinkedHashMap<>())
+                      .putIfAbsent(binding.multiBindKey.get(), binding);
+
+              if (Objects.nonNull(previous)
+                  && !Objects.equals(
+                      previous.implementationFullName, binding.implementationFullName)) {
+                duplicates.accept(binding, previous);
+              }
+            });
+
+    return mapKeys;
+  }
+
+  /**
+   * Dispatchers are only generated for maps of simple modules, maps of providers are left out since
+   * their values are not constructed up front. Class keys are ordered by their depth in the type
+   * hierarchy, so every key comes before its supertypes. Dispatchers are singletons, so the values
+   * are copied and the lookups built once per component and not for every injection.
+   */
+  private Map<String, SourceFile> compileDispatchers(
+      List<BindingGraph> modules, Map<String, Map<String, SingleBinding>> mapKeys) {
+    Map<String, SourceFile> files = new LinkedHashMap<>();
+
+    for (BindingGraph graph : modules) {
+      for (MultiBinding binding : graph.multiBindings) {
+        if (binding.multiBind != Type.STRING_MAP && binding.multiBind != Type.CLASS_MAP
+            || binding.providers
+            || binding.foreign) {
+          continue;
+        }
+        Map<String, SingleBinding> contributions =
+            mapKeys.getOrDefault(binding.interfaceFullName, Map.of());
+        List<Element> originatingElements = new ArrayList<>();
+        originatingElements.add(binding.bindInterface);
+        contributions.values().forEach(contribution -> originatingElements.add(contribution.implementation));
+        String name = binding.interfaceSimpleName + "Dispatcher";
+
+        SourceFile file =
+            new SourceFile(
+                binding.packageName,
+                binding.multiBind == Type.CLASS_MAP
+                    ? new SourceClassDispatcher(
+                        List.of(SINGLETON),
+                        name,
+                        binding.interfaceFullName,
+                        contributions.values().stream()
+                            .sorted(
+                                Comparator.comparingInt(
+                                        (SingleBinding contribution) -> contribution.multiBindKeyDepth)
+                                    .reversed())
+                            .map(contribution -> contribution.multiBindKey.get())
+                            .collect(Collectors.toList()))
+                    : new SourceDispatcher(
+                        List.of(SINGLETON),
+                        name,
+                        binding.interfaceFullName,
+                        new ArrayList<>(contributions.keySet())),
+                originatingElements);
+        files.put(file.qualifiedName(), file);
+      }
+    }
 
     return files;
   }
 
-  private Map<String, String> compileEncapsulated(List<Module> modules) {
-    Map<String, String> files = new LinkedHashMap<>();
+  private Map<String, SourceFile> compileEncapsulated(List<BindingGraph> modules) {
+    Map<String, SourceFile> files = new LinkedHashMap<>();
 
     files.putAll(compileModules(modules, "Encapsulated", true));
     files.putAll(compileWrapperComponents(modules, "EncapsulatedComponent", "Encapsulated"));
@@ -46,175 +202,227 @@ public class DaggerAutoCompiler {
     return files;
   }
 
-  private Map<String, String> compileModules(
-      List<Module> modules, String nameSuffix, boolean encapsulate) {
-    return modules.stream()
-        .map(
-            module -> {
-              String fileName = module.qualifiedName() + nameSuffix;
-              String fileContent = compileModule(module, nameSuffix, encapsulate);
-
-              return new SimpleEntry<>(fileName, fileContent);
-            })
-        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+  private Map<String, SourceFile> compileModules(
+      List<BindingGraph> modules, String nameSuffix, boolean encapsulate) {
+    return forEachModule(modules, module -> compileModule(module, nameSuffix, encapsulate));
   }
 
-  private Map<String, String> compileWrapperComponents(
-      List<Module> modules, String nameSuffix, String moduleNameSuffix) {
-    return modules.stream()
-        .map(
-            module -> {
-              String fileName = module.qualifiedName() + nameSuffix;
-              String fileContent = compileWrapperComponent(module, nameSuffix, moduleNameSuffix);
+  private Map<String, SourceFile> compileWrapperComponents(
+      List<BindingGraph> modules, String nameSuffix, String moduleNameSuffix) {
+    return forEachModule(
+        modules, module -> List.of(compileWrapperComponent(module, nameSuffix, moduleNameSuffix)));
+  }
 
-              return new SimpleEntry<>(fileName, fileContent);
-            })
-        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+  private Map<String, SourceFile> compileWrapperModules(
+      List<BindingGraph> modules, String componentNameSuffix, String moduleNameSuffix) {
+    return forEachModule(
+        modules,
+        module -> List.of(compileWrapperModule(module, componentNameSuffix, moduleNameSuffix)));
   }
 
-  private Map<String, String> compileWrapperModules(
-      List<Module> modules, String componentNameSuffix, String moduleNameSuffix) {
-    return modules.stream()
-        .map(
-            module -> {
-              String fileName = module.qualifiedName();
-              String fileContent =
-                  compileWrapperModule(module, componentNameSuffix, moduleNameSuffix);
+  private Map<String, SourceFile> forEachModule(
+      List<BindingGraph> modules, Function<BindingGraph, List<SourceFile>> moduleCompilation) {
+    Function<BindingGraph, List<SourceFile>> compilation =
+        graph -> stats.time(graph.module, () -> moduleCompilation.apply(graph));
+    List<List<SourceFile>> files;
 
-              return new SimpleEntry<>(fileName, fileContent);
-            })
-        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    if (Objects.isNull(pool) || modules.size() < 2) {
+      files = modules.stream().map(compilation).collect(Collectors.toList());
+    } else {
+      files =
+          modules.stream()
+              .map(module -> pool.submit(() -> compilation.apply(module)))
+              .collect(Collectors.toList())
+              .stream()
+              .map(ForkJoinTask::join)
+              .collect(Collectors.toList());
+    }
+
+    return files.stream()
+        .flatMap(List::stream)
+        .collect(
+            Collectors.toMap(
+                SourceFile::qualifiedName, file -> file, (first, second) -> first, LinkedHashMap::new));
   }
 
-  private String compileModule(Module module, String nameSuffix, boolean encapsulate) {
-    String singleBindingsString =
-        module.bindings.stream()
-            .filter(binding -> binding instanceof SingleBinding)
-            .map(binding -> compileSingleBinding((SingleBinding) binding))
-            .collect(Collectors.joining("\n\n"));
+  private List<SourceFile> compileModule(BindingGraph graph, String nameSuffix, boolean encapsulate) {
+    Module module = graph.module;
+    SourceCounters counters =
+        provisionCounters ? new SourceCounters(module.qualifiedName() + nameSuffix) : null;
+    // entries of provider maps are contributed by the wrapper module of an encapsulated module
+    // contributions to a list are compiled into a single sorted run, in place of the first one
+    Map<String, List<SingleBinding>> listContributions =
+        graph.singleBindings.stream()
+            .filter(binding -> binding.multiBind.filter(type -> type == Type.LIST).isPresent())
+            .collect(Collectors.groupingBy(binding -> binding.interfaceFullName));
+    List<SourceMember> singleBindings =
+        graph.singleBindings.stream()
+            .filter(binding -> !encapsulate || !binding.multiBindProviders)
+            .flatMap(
+                binding -> {
+                  if (binding.multiBind.filter(type -> type == Type.LIST).isPresent()) {
+                    List<SingleBinding> contributions =
+                        listContributions.remove(binding.interfaceFullName);
 
-    String multiBindingsString =
-        module.bindings.stream()
-            .filter(binding -> binding instanceof MultiBinding && !isForeign(module, (MultiBinding) binding))
-            .map(
+                    return Objects.isNull(contributions)
+                        ? Stream.empty()
+                        : Stream.of(compileListRun(contributions, counters));
+                  }
+                  return Stream.of(compileSingleBinding(binding, counters));
+                })
+            .collect(Collectors.toList());
+
+    List<SourceMember> multiBindings =
+        graph.multiBindings.stream()
+            .filter(binding -> !encapsulate || !binding.providers)
+            .flatMap(
                 binding ->
-                    encapsulate
-                        ? compileMultiBindingForEncapsulatedModule((MultiBinding) binding)
-                        : compileMultiBinding((MultiBinding) binding))
-            .collect(Collectors.joining("\n\n"));
+                    Stream.concat(
+                        Stream.of(
+                            encapsulate
+                                ? compileMultiBindingForEncapsulatedModule(graph.module, binding)
+                                : compileMultiBinding(binding)),
+                        compileFromElements(binding)))
+            .collect(Collectors.toList());
 
     //TODO: instead of the changes in the compiler for injected multibindings from another module
     // it might be better to create actual MultiBindings in parser with a flag like foreign
-    String multiBindingsStringInjected = encapsulate ? module.bindings.stream()
-        .filter(binding -> binding instanceof SingleBinding)
-        .flatMap(binding -> ((SingleBinding)binding).injections.entrySet().stream())
-        .filter(entry -> isMulti(entry.getKey()) && !isBound(entry.getKey(), module.bindings))
+    List<SourceParameter> externalInjections =
+        encapsulate ? graph.getExternalMultiInjections() : List.of();
+
+    List<SourceMember> multiBindingsInjected = externalInjections.stream()
         .map(
-            entry ->
-                String.format(
-                    "@jakarta.inject.Singleton\n"
-                        + "@dagger.Provides\n"
-                        + "@dagger.multibindings.ElementsIntoSet\n"
-                        + "static %1$s %2$sExternal(%3$s externalMultiBindings) {\n"
-                        + "\treturn externalMultiBindings.%2$s()%4$s;\n"
-                        + "}",
-                    noLazy(entry.getKey()),
-                    entry.getValue(),
-                    "ExternalMultiBindings",
-                    isLazy(entry.getKey()) ? ".get()" : ""))
-        .collect(Collectors.joining("\n\n")) : "";
-
-    String externalMultiBindings =
+            injection ->
+                SourceMethod.staticMethod(
+                    List.of(SINGLETON, PROVIDES, ELEMENTS_INTO_SET),
+                    noLazy(injection.type),
+                    injection.name + "External",
+                    List.of(new SourceParameter("ExternalMultiBindings", "externalMultiBindings")),
+                    recordMultiBinding(
+                        graph.module,
+                        noLazy(injection.type),
+                        SourceExpression.of(
+                            String.format(
+                                "externalMultiBindings.%s()%s",
+                                injection.name,
+                                isLazy(injection.type) ? ".get()" : "")))))
+        .collect(Collectors.toList());
+
+    List<SourceMember> externalMultiBindings =
         encapsulate
-            ? compileExternalMultiBindingsWrapper(
-                module.bindings.stream()
-                    .filter(binding -> binding instanceof MultiBinding && !isForeign(module, (MultiBinding) binding))
-                    .map(binding -> (MultiBinding) binding)
-                    .collect(Collectors.toList()),
-            module.bindings.stream()
-                .filter(binding -> binding instanceof SingleBinding)
-                .flatMap(binding -> ((SingleBinding)binding).injections.entrySet().stream())
-                .filter(entry -> isMulti(entry.getKey()) && !isBound(entry.getKey(), module.bindings))
-                .collect(Collectors.toList()))
-            : "";
-
-    return String.format(
-        "package %s;\n\n@dagger.Module\npublic interface %s {\n\n%s\n\n%s\n\n%s\n\n%s\n\n}",
+            ? List.of(compileExternalMultiBindingsWrapper(graph.multiBindings, externalInjections))
+            : List.of();
+
+    if (shardSize > 0 && singleBindings.size() > shardSize) {
+      return compileShardedModule(
+          graph,
+          module.moduleName + nameSuffix,
+          singleBindings,
+          withCounters(List.of(multiBindings, multiBindingsInjected, externalMultiBindings), counters));
+    }
+
+    return List.of(new SourceFile(
         module.packageName,
-        module.moduleName + nameSuffix,
-        singleBindingsString,
-        multiBindingsString,
-        multiBindingsStringInjected,
-        externalMultiBindings);
+        SourceType.topLevel(
+            List.of(MODULE),
+            module.moduleName + nameSuffix,
+            withCounters(
+                List.of(singleBindings, multiBindings, multiBindingsInjected, externalMultiBindings),
+                counters)),
+        graph.originatingElements));
   }
 
-  //TODO
-  private boolean isForeign(Module module, MultiBinding multiBinding) {
-    return !module.packageName.startsWith("de.ii.xtraplatform.web")
-        && (multiBinding.interfaceFullName.endsWith(".Binder")
-    || multiBinding.interfaceFullName.endsWith(".ContainerResponseFilter")
-    || multiBinding.interfaceFullName.endsWith(".ContainerRequestFilter")
-        || multiBinding.interfaceFullName.endsWith(".ExceptionMapper<?>")
-        || multiBinding.interfaceFullName.endsWith(".ExceptionMapper")
-        || multiBinding.interfaceFullName.endsWith(".ServletRegistration")
-        || multiBinding.interfaceFullName.endsWith(".FeatureFormatExtension"));
+  /**
+   * Splits the single bindings into shard modules named {@code <moduleName>_Shard<N>}. The module
+   * itself includes the shards and keeps all other members, so references to it stay valid.
+   */
+  private List<SourceFile> compileShardedModule(
+      BindingGraph graph,
+      String moduleName,
+      List<SourceMember> singleBindings,
+      List<List<SourceMember>> sections) {
+    Module module = graph.module;
+    List<SourceFile> files = new ArrayList<>();
+    List<String> includes = new ArrayList<>();
+
+    for (int i = 0; i * shardSize < singleBindings.size(); i++) {
+      String shardName = String.format("%s_Shard%d", moduleName, i);
+      List<SourceMember> shard =
+          singleBindings.subList(
+              i * shardSize, Math.min((i + 1) * shardSize, singleBindings.size()));
+
+      files.add(
+          new SourceFile(
+              module.packageName,
+              SourceType.topLevel(List.of(MODULE), shardName, List.of(shard)),
+              graph.originatingElements));
+      includes.add(String.format("%s.%s.class", module.packageName, shardName));
+    }
+
+    files.add(
+        new SourceFile(
+            module.packageName,
+            SourceType.topLevel(
+                List.of(
+                    SourceAnnotation.of(
+                        MODULE.type, String.format("includes = {%s}", String.join(", ", includes)))),
+                moduleName,
+                sections),
+            graph.originatingElements));
+
+    return files;
   }
 
   // TODO: scope
-  private String compileWrapperComponent(
-      Module module, String nameSuffix, String moduleNameSuffix) {
-    List<Binding> filtered = module.bindings.stream()
-        .filter(binding -> binding instanceof SingleBinding || (binding instanceof MultiBinding
-            && !isForeign(module,
-            (MultiBinding) binding)))
-        .collect(Collectors.toList());
-    String bindingsString = compileWrapperComponentBindings(filtered);
+  private SourceFile compileWrapperComponent(
+      BindingGraph graph, String nameSuffix, String moduleNameSuffix) {
+    Module module = graph.module;
+    List<SourceMember> bindings = compileWrapperComponentBindings(graph.localBindings);
 
-    String injections =
-        module.bindings.stream()
-            .filter(binding -> binding instanceof SingleBinding)
-            .map(binding -> (SingleBinding) binding)
-            .flatMap(
-                binding ->
-                    binding.injections.entrySet().stream()
-                        .filter(
-                            entry ->
-                                !isMulti(entry.getKey()) && !isBound(entry.getKey(), module.bindings))
-                        .map(
-                            entry ->
-                                String.format(
-                                    "@dagger.BindsInstance\n\t\tBuilder %1$s(%2$s %1$s);",
-                                    entry.getValue(), entry.getKey())))
-            .distinct()
-            .collect(Collectors.joining("\n\t\t"));
-    String injections2 =
-        String.format(
-            "@dagger.BindsInstance\n\t\tBuilder externalMultiBindings(%s.ExternalMultiBindings externalMultiBindings);",
-            module.qualifiedName() + moduleNameSuffix);
+    List<SourceMember> injections =
+        graph.injections.stream()
+            .filter(injection -> !isMulti(injection.type) && !graph.isBound(injection.type))
+            .map(parameter -> compileBuilderSetter(parameter))
+            .collect(Collectors.toList());
+    SourceMember injections2 =
+        compileBuilderSetter(
+            new SourceParameter(
+                module.qualifiedName() + moduleNameSuffix + ".ExternalMultiBindings",
+                "externalMultiBindings"));
 
-    String builder =
-        String.format(
-            "\t@dagger.Component.Builder\n\tinterface Builder {\n\n\t\t%s\n\n\t\t%s\n\n\t\t%s build();\n\n\t}",
-            injections, injections2, module.moduleName + nameSuffix);
+    SourceType builder =
+        new SourceType(
+            List.of(SourceAnnotation.of("dagger.Component.Builder")),
+            false,
+            "Builder",
+            Layout.GROUPED,
+            "\t",
+            "\t\t",
+            List.of(
+                injections,
+                List.of(injections2),
+                List.of(
+                    SourceMethod.abstractMethod(
+                        List.of(), module.moduleName + nameSuffix, "build", List.of()))));
 
-    return String.format(
-        "package %s;\n\n@jakarta.inject.Singleton\n@dagger.Component(modules = {%s.class})\npublic interface %s {\n\n%s\n\n%s\n\n}",
+    return new SourceFile(
         module.packageName,
-        module.qualifiedName() + moduleNameSuffix,
-        module.moduleName + nameSuffix,
-        bindingsString,
-        builder);
+        SourceType.topLevel(
+            List.of(
+                SINGLETON,
+                SourceAnnotation.of(
+                    "dagger.Component",
+                    String.format("modules = {%s.class}", module.qualifiedName() + moduleNameSuffix))),
+            module.moduleName + nameSuffix,
+            List.of(bindings, List.of(builder))),
+        graph.originatingElements);
   }
 
-  static boolean isBound(String injection, List<Binding> bindings) {
-    return bindings.stream()
-        .anyMatch(
-            binding1 ->
-                Objects.equals(binding1.getInterface(), injection)
-                    || Objects.equals(
-                    toLazy(binding1.getInterface()),
-                    injection));
+  private SourceMethod compileBuilderSetter(SourceParameter parameter) {
+    return SourceMethod.abstractMethod(
+        List.of(BINDS_INSTANCE), "Builder", parameter.name, List.of(parameter));
   }
+
   static boolean isMulti(String injection) {
     return injection.startsWith("java.util.Set<") || injection.startsWith("dagger.Lazy<java.util.Set<");
   }
@@ -230,36 +438,98 @@ public class DaggerAutoCompiler {
   static String noLazy(String intrfc) {
     return isLazy(intrfc) ? intrfc.substring(0, intrfc.length()-1).replace("dagger.Lazy<", "") : intrfc;
   }
+  /**
+   * @return the type of the set that Dagger collects the contributions to a multibinding of the
+   *     given type in, for lazy sets the element providers, for enum maps the entries, for lists the
+   *     sorted runs of every module
+   */
+  static String toElements(Type type, Optional<String> enumKey, String intrfc) {
+    switch (type) {
+      case LAZY_SET:
+        return String.format("java.util.Set<%s.Element<%s>>", LAZY_SET, intrfc);
+      case ENUM_MAP:
+        return String.format("java.util.Set<java.util.Map.Entry<%s, %s>>", enumKey.orElseThrow(), intrfc);
+      case LIST:
+        return String.format("java.util.Set<%s.Run<%s>>", PRIORITY_LIST, intrfc);
+      default:
+        return String.format("java.util.Set<%s>", intrfc);
+    }
+  }
+  static boolean isLazySet(String injection) {
+    return injection.startsWith(LAZY_SET + "<");
+  }
+  static String noLazySet(String intrfc) {
+    return isLazySet(intrfc) ? intrfc.substring(LAZY_SET.length() + 1, intrfc.length() - 1) : intrfc;
+  }
+  static boolean isList(String injection) {
+    return injection.startsWith("java.util.List<");
+  }
+  static String noList(String intrfc) {
+    return isList(intrfc) ? intrfc.substring("java.util.List<".length(), intrfc.length() - 1) : intrfc;
+  }
+  static String toProvider(String intrfc) {
+    return String.format("javax.inject.Provider<%s>", intrfc);
+  }
+  static String noProvider(String intrfc) {
+    for (String provider : List.of("javax.inject.Provider<", "jakarta.inject.Provider<")) {
+      if (intrfc.startsWith(provider)) {
+        return intrfc.substring(provider.length(), intrfc.length() - 1);
+      }
+    }
+    return intrfc;
+  }
+  static boolean isMap(String injection) {
+    return injection.startsWith("java.util.Map<");
+  }
+  /**
+   * @return the value type of a map type, i.e. everything after the first top level comma
+   */
+  static String noMap(String intrfc) {
+    if (!isMap(intrfc)) {
+      return intrfc;
+    }
+    int depth = 0;
+    for (int i = "java.util.Map<".length(); i < intrfc.length(); i++) {
+      char c = intrfc.charAt(i);
+      if (c == '<') {
+        depth++;
+      } else if (c == '>') {
+        depth--;
+      } else if (c == ',' && depth == 0) {
+        return intrfc.substring(i + 1, intrfc.length() - 1).trim();
+      }
+    }
+    return intrfc;
+  }
 
-  private String compileWrapperModule(
-      Module module, String componentNameSuffix, String moduleNameSuffix) {
+  private SourceFile compileWrapperModule(
+      BindingGraph graph, String componentNameSuffix, String moduleNameSuffix) {
+    Module module = graph.module;
     String componentName = module.qualifiedName() + componentNameSuffix;
     String daggerComponentName =
         String.format("%s.Dagger%s%s", module.packageName, module.moduleName, componentNameSuffix);
-    // TODO
-    String injections = "";
 
-    List<Binding> filtered = module.bindings.stream()
-        .filter(binding -> binding instanceof SingleBinding || (binding instanceof MultiBinding
-            && !isForeign(module,
-            (MultiBinding) binding)))
-        .collect(Collectors.toList());
-
-    String builder =
+    SourceMember builder =
         compileWrapperModuleComponentCreator(
-            filtered,
+            graph,
             componentName,
             daggerComponentName,
             module.qualifiedName() + moduleNameSuffix);
 
-    String bindingsString = compileWrapperModuleBindings(filtered, componentName);
+    SourceCounters counters = provisionCounters ? new SourceCounters(module.qualifiedName()) : null;
+    List<SourceMember> bindings =
+        compileWrapperModuleBindings(graph.localBindings, componentName, counters);
 
-    return String.format(
-        "package %s;\n\n@dagger.Module\npublic interface %s {\n\n%s\n\n%s\n\n}",
-        module.packageName, module.moduleName, builder, bindingsString);
+    return new SourceFile(
+        module.packageName,
+        SourceType.topLevel(
+            List.of(MODULE),
+            module.moduleName,
+            withCounters(List.of(List.of(builder), bindings), counters)),
+        graph.originatingElements);
   }
 
-  private String compileWrapperComponentBindings(List<Binding> bindings) {
+  private List<SourceMember> compileWrapperComponentBindings(List<Binding> bindings) {
     Set<String> externalMultiBindings = new HashSet<>();
 
     return bindings.stream()
@@ -267,32 +537,34 @@ public class DaggerAutoCompiler {
             binding -> {
               if (binding instanceof SingleBinding) {
                 SingleBinding singleBinding = (SingleBinding) binding;
+                if (singleBinding.multiBindProviders) {
+                  return Stream.of(compileProviderMapEntryForWrapperComponent(singleBinding));
+                }
                 if (singleBinding.multiBind.isPresent()) {
                   if (!externalMultiBindings.contains((singleBinding.interfaceFullName))) {
                     externalMultiBindings.add(singleBinding.interfaceFullName);
                     return Stream.of(compileMultiBindingForWrapperComponent(singleBinding));
-                  } /*else if (singleBinding.multiBindOtherModule) {
-                    return Stream.of(
-                        compileMultiBindingForWrapperComponent(singleBinding));
-                  }*/
+                  }
                   return Stream.empty();
                 }
 
                 return Stream.of(compileSingleBindingForWrapperComponent((SingleBinding) binding));
               } else if (binding instanceof MultiBinding) {
                 MultiBinding multiBinding = (MultiBinding) binding;
-                if (!externalMultiBindings.contains((multiBinding.interfaceFullName))) {
+                if (!multiBinding.providers
+                    && !externalMultiBindings.contains((multiBinding.interfaceFullName))) {
                   externalMultiBindings.add(multiBinding.interfaceFullName);
                   return Stream.of(compileMultiBindingForWrapperComponent(multiBinding));
                 }
               }
 
-              return Stream.empty();
+              return Stream.<SourceMember>empty();
             })
-        .collect(Collectors.joining("\n\n"));
+        .collect(Collectors.toList());
   }
 
-  private String compileWrapperModuleBindings(List<Binding> bindings, String componentName) {
+  private List<SourceMember> compileWrapperModuleBindings(
+      List<Binding> bindings, String componentName, SourceCounters counters) {
     Set<String> externalMultiBindings = new HashSet<>();
 
     return bindings.stream()
@@ -300,57 +572,58 @@ public class DaggerAutoCompiler {
             binding -> {
               if (binding instanceof SingleBinding) {
                 SingleBinding singleBinding = (SingleBinding) binding;
+                if (singleBinding.multiBindProviders) {
+                  return Stream.of(
+                      compileProviderMapEntryForWrapperModule(singleBinding, componentName, counters));
+                }
                 if (singleBinding.multiBind.isPresent()) {
                   if (!singleBinding.multiBindSameModule
                       && !externalMultiBindings.contains((singleBinding.interfaceFullName))) {
                     externalMultiBindings.add(singleBinding.interfaceFullName);
                     return Stream.of(
                         compileMultiBindingForWrapperModule(singleBinding, componentName));
-                  } /*else if (singleBinding.multiBindOtherModule) {
-                    return Stream.of(
-                        compileMultiBindingForWrapperModule(singleBinding, componentName));
-                  }*/
+                  }
                   return Stream.empty();
                 }
 
                 return Stream.of(
-                    compileSingleBindingForWrapperModule((SingleBinding) binding, componentName));
+                    compileSingleBindingForWrapperModule(
+                        (SingleBinding) binding, componentName, counters));
               } else if (binding instanceof MultiBinding) {
                 MultiBinding multiBinding = (MultiBinding) binding;
-                return Stream.of(compileMultiBinding(multiBinding));
+                return Stream.concat(
+                    Stream.of(compileMultiBinding(multiBinding)), compileFromElements(multiBinding));
               }
 
-              return Stream.empty();
+              return Stream.<SourceMember>empty();
             })
-        .collect(Collectors.joining("\n\n"));
+        .collect(Collectors.toList());
   }
 
-  private String compileWrapperModuleComponentCreator(
-      List<Binding> bindings,
+  private SourceMember compileWrapperModuleComponentCreator(
+      BindingGraph graph,
       String componentName,
       String daggerComponentName,
       String wrapperModuleName) {
     // TODO: other injections
-    String injections =
-        bindings.stream()
+    List<SourceParameter> injections =
+        graph.localBindings.stream()
             .flatMap(
                 binding -> {
                   if (binding instanceof SingleBinding) {
                     SingleBinding singleBinding = (SingleBinding) binding;
                     return singleBinding.injections.entrySet().stream()
-                        .filter(
-                            entry ->
-                                bindings.stream()
-                                    .noneMatch(
-                                        binding1 ->
-                                            Objects.equals(
-                                                binding1.getInterface(), entry.getKey())))
-                        .map(entry -> String.format("%s %s", entry.getKey(), entry.getValue()));
+                        .filter(entry -> !graph.isInterfaceLocal(entry.getKey()))
+                        .map(entry -> new SourceParameter(entry.getKey(), entry.getValue()));
                   } else if (binding instanceof MultiBinding) {
                     MultiBinding multiBinding = (MultiBinding) binding;
                     String paramName =
                         multiBinding.interfaceSimpleName.substring(0, 1).toLowerCase()
                             + multiBinding.interfaceSimpleName.substring(1);
+                    // provider maps are injected like any other external type
+                    if (multiBinding.providers) {
+                      return Stream.empty();
+                    }
                     switch (multiBinding.multiBind) {
                       case STRING_MAP:
                       case CLASS_MAP:
@@ -359,150 +632,389 @@ public class DaggerAutoCompiler {
                       case SET:
                       default:
                         return Stream.of(
-                            String.format("%s %s", multiBinding.getInterfaceLazy(), paramName));
+                            new SourceParameter(multiBinding.getInterfaceLazy(), paramName));
                     }
                   }
                   return Stream.empty();
                 })
             .distinct()
-            .collect(Collectors.joining(", "));
+            .collect(Collectors.toList());
 
-    String builderParameters =
-        bindings.stream()
-            .filter(binding -> binding instanceof SingleBinding)
-            .map(binding -> (SingleBinding) binding)
-            .flatMap(
-                binding ->
-                    binding.injections.entrySet().stream()
-                        .filter(
-                            entry ->
-                                !isMulti(entry.getKey()) && !isBound(entry.getKey(), bindings))
-                        .map(entry -> String.format("\t.%1$s(%1$s)", entry.getValue())))
+    List<String> builderParameters =
+        graph.injections.stream()
+            .filter(injection -> !isMulti(injection.type) && !graph.isBoundLocal(injection.type))
+            .map(injection -> injection.name)
             .distinct()
-            .collect(Collectors.joining("\n"));
+            .collect(Collectors.toList());
 
-    String externalMultiBindings =
-        Stream.concat(bindings.stream()
-            .filter(binding -> binding instanceof MultiBinding)
-            .map(binding -> (MultiBinding) binding)
+    List<SourceParameter> externalMultiBindings =
+        Stream.concat(graph.multiBindings.stream()
+            .filter(binding -> !binding.providers)
             .map(
                 binding -> {
                   String methodName =
                       binding.interfaceSimpleName.substring(0, 1).toLowerCase()
                           + binding.interfaceSimpleName.substring(1);
-                  return String.format(
-                      "\t\t\tpublic %1$s %2$s() {return %2$s;}",
-                      binding.getInterfaceLazy(), methodName);
+                  return new SourceParameter(binding.getInterfaceLazy(), methodName);
                 }),
-                bindings.stream()
-                    .filter(binding -> binding instanceof SingleBinding)
-                    .flatMap(binding -> ((SingleBinding)binding).injections.entrySet().stream())
-                    .filter(entry -> isMulti(entry.getKey()) && !isBound(entry.getKey(), bindings))
-                    .map(
-                        entry -> {
-                          return String.format(
-                              "\t\t\tpublic %1$s %2$s() {return %2$s;}",
-                              entry.getKey(), entry.getValue());
-                        })
+                graph.injections.stream()
+                    .filter(injection -> isMulti(injection.type) && !graph.isBoundLocal(injection.type))
                 )
             .distinct()
-            .collect(Collectors.joining("\n"));
+            .collect(Collectors.toList());
 
-    // TODO
-    String builderParameters2 =
-        String.format(
-            "\t.externalMultiBindings(new %s.ExternalMultiBindings () {\n%s\n\t\t})",
-            wrapperModuleName, externalMultiBindings);
+    return SourceMethod.staticMethod(
+        List.of(SINGLETON, PROVIDES),
+        componentName,
+        "create",
+        injections,
+        recordComponentCreation(
+            graph.module,
+            componentName,
+            new SourceComponentBuilder(
+                daggerComponentName,
+                builderParameters,
+                wrapperModuleName + ".ExternalMultiBindings",
+                externalMultiBindings)));
+  }
+
+  private SourceExpression recordComponentCreation(
+      Module module, String componentName, SourceExpression creation) {
+    return jfrEvents
+        ? SourceExpression.supplied(
+            EVENTS + ".componentCreation", List.of(module.qualifiedName(), componentName), creation)
+        : creation;
+  }
 
-    return String.format(
-        "@jakarta.inject.Singleton\n@dagger.Provides\nstatic %s create(%s) {\n\treturn %s.builder()\n\t%s\n\t%s\n\t.build();\n}",
-        componentName, injections, daggerComponentName, builderParameters, builderParameters2);
+  private SourceExpression recordMultiBinding(
+      Module module, String multiBinding, SourceExpression materialization) {
+    return jfrEvents
+        ? SourceExpression.supplied(
+            EVENTS + ".multiBinding", List.of(module.qualifiedName(), multiBinding), materialization)
+        : materialization;
   }
 
-  private String compileSingleBinding(SingleBinding binding) {
-    String intoSetOrMap = compileIntoSetOrMap(binding);
+  private SourceMember compileSingleBinding(SingleBinding binding, SourceCounters counters) {
+    List<SourceAnnotation> annotations = new ArrayList<>();
+    annotations.add(Objects.isNull(counters) ? BINDS : PROVIDES);
+    annotations.addAll(compileIntoSetOrMap(binding));
     String methodName =
         String.format("%sTo%s", binding.implementationSimpleName, binding.interfaceSimpleName);
 
-    return String.format(
-        "@dagger.Binds\n%s%s %s(%s %s);",
-        intoSetOrMap,
+    if (binding.multiBind.filter(type -> type == Type.LAZY_SET).isPresent()) {
+      return compileLazySetElement(binding, counters);
+    }
+    if (binding.multiBind.filter(type -> type == Type.ENUM_MAP).isPresent()) {
+      return compileEnumMapEntry(binding, counters);
+    }
+
+    if (Objects.nonNull(counters)) {
+      String label =
+          binding.multiBind.isPresent()
+              ? String.format("%s <- %s", binding.interfaceFullName, binding.implementationFullName)
+              : binding.interfaceFullName;
+
+      return SourceMethod.staticMethod(
+          annotations,
+          binding.interfaceFullName,
+          methodName,
+          List.of(new SourceParameter(binding.implementationFullName, binding.implementationSimpleName)),
+          counters.count(label, SourceExpression.of(binding.implementationSimpleName)));
+    }
+
+    return SourceMethod.abstractMethod(
+        annotations,
         binding.interfaceFullName,
         methodName,
-        binding.implementationFullName,
-        binding.implementationSimpleName);
+        List.of(new SourceParameter(binding.implementationFullName, binding.implementationSimpleName)));
   }
 
-  private String compileSingleBindingForWrapperComponent(SingleBinding binding) {
+  private SourceMember compileSingleBindingForWrapperComponent(SingleBinding binding) {
     String methodName =
         binding.interfaceSimpleName.substring(0, 1).toLowerCase()
             + binding.interfaceSimpleName.substring(1);
 
-    return String.format("%s %s();", binding.interfaceFullName, methodName);
+    return SourceMethod.abstractMethod(List.of(), binding.interfaceFullName, methodName, List.of());
   }
 
   // TODO: scope
-  private String compileSingleBindingForWrapperModule(SingleBinding binding, String componentName) {
+  private SourceMember compileSingleBindingForWrapperModule(
+      SingleBinding binding, String componentName, SourceCounters counters) {
     String methodName =
         binding.interfaceSimpleName.substring(0, 1).toLowerCase()
             + binding.interfaceSimpleName.substring(1);
+    SourceExpression provision = SourceExpression.of(String.format("component.%s()", methodName));
+
+    return SourceMethod.staticMethod(
+        List.of(SINGLETON, PROVIDES),
+        binding.interfaceFullName,
+        methodName,
+        List.of(new SourceParameter(componentName, "component")),
+        Objects.isNull(counters) ? provision : counters.count(binding.interfaceFullName, provision));
+  }
+
+  /**
+   * Entries of provider maps are not contributed inside of the encapsulated component, since its
+   * map could not be merged with the entries of other modules. Instead the component exposes the
+   * implementation and the wrapper module contributes it, so the entry is only constructed when its
+   * provider is called. The encapsulated bindings get the whole map of providers from the builder.
+   */
+  private SourceMember compileProviderMapEntryForWrapperComponent(SingleBinding binding) {
+    String methodName =
+        String.format("%sTo%s", binding.implementationSimpleName, binding.interfaceSimpleName);
+
+    return SourceMethod.abstractMethod(
+        List.of(), binding.implementationFullName, methodName, List.of());
+  }
+
+  private SourceMember compileProviderMapEntryForWrapperModule(
+      SingleBinding binding, String componentName, SourceCounters counters) {
+    String methodName =
+        String.format("%sTo%s", binding.implementationSimpleName, binding.interfaceSimpleName);
+    SourceExpression provision = SourceExpression.of(String.format("component.%s()", methodName));
+    List<SourceAnnotation> annotations = new ArrayList<>();
+    annotations.add(PROVIDES);
+    annotations.addAll(compileIntoSetOrMap(binding));
+
+    return SourceMethod.staticMethod(
+        annotations,
+        binding.interfaceFullName,
+        methodName,
+        List.of(new SourceParameter(componentName, "component")),
+        Objects.isNull(counters)
+            ? provision
+            : counters.count(
+                String.format("%s <- %s", binding.interfaceFullName, binding.implementationFullName),
+                provision));
+  }
 
-    return String.format(
-        "@jakarta.inject.Singleton\n@dagger.Provides\nstatic %s %s(%s component) {\n\treturn component.%s();\n}",
-        binding.interfaceFullName, methodName, componentName, methodName);
+  /**
+   * @return the given sections, followed by the counters section if counters are enabled. Empty
+   *     sections are still separated by blank lines, so it is only appended if needed.
+   */
+  private static List<List<SourceMember>> withCounters(
+      List<List<SourceMember>> sections, SourceCounters counters) {
+    if (Objects.isNull(counters)) {
+      return sections;
+    }
+    List<List<SourceMember>> withCounters = new ArrayList<>(sections);
+    withCounters.add(counters.compile());
+
+    return withCounters;
   }
 
-  private String compileMultiBinding(MultiBinding binding) {
+  private SourceMember compileMultiBinding(MultiBinding binding) {
     String methodName =
         binding.interfaceSimpleName.substring(0, 1).toLowerCase()
             + binding.interfaceSimpleName.substring(1)
             + "Multi";
 
+    return SourceMethod.abstractMethod(
+        List.of(MULTIBINDS),
+        binding.multiBind == Type.LAZY_SET
+                || binding.multiBind == Type.ENUM_MAP
+                || binding.multiBind == Type.LIST
+            ? binding.getElements()
+            : binding.getInterface(),
+        methodName,
+        List.of());
+  }
+
+  /**
+   * @return the binding of the lazy set, enum map or list for the given multibinding, which wraps
+   *     the set of its elements. The binding is scoped, so the wrapper is created once per component
+   *     and a lazy set constructs each of its elements at most once for all consumers.
+   */
+  private Stream<SourceMember> compileFromElements(MultiBinding binding) {
+    String methodName =
+        binding.interfaceSimpleName.substring(0, 1).toLowerCase()
+            + binding.interfaceSimpleName.substring(1);
+    SourceExpression wrapper;
+
     switch (binding.multiBind) {
-      case STRING_MAP:
-        return String.format(
-            "@dagger.multibindings.Multibinds\njava.util.Map<String, %s> %s();",
-            binding.interfaceFullName, methodName);
-      case CLASS_MAP:
-        return String.format(
-            "@dagger.multibindings.Multibinds\njava.util.Map<Class<?>, %s> %s();",
-            binding.interfaceFullName, methodName);
-      case SET:
+      case LAZY_SET:
+        methodName += "LazySet";
+        wrapper = SourceExpression.of(String.format("%s.of(elements)", LAZY_SET));
+        break;
+      case ENUM_MAP:
+        methodName += "EnumMap";
+        wrapper =
+            SourceExpression.of(
+                String.format("%s.of(%s.class, elements)", ENUM_MAPS, binding.enumKey.orElseThrow()));
+        break;
+      case LIST:
+        methodName += "List";
+        wrapper = SourceExpression.of(String.format("%s.of(elements)", PRIORITY_LIST));
+        break;
       default:
-        return String.format(
-            "@dagger.multibindings.Multibinds\njava.util.Set<%s> %s();",
-            binding.interfaceFullName, methodName);
+        return Stream.empty();
     }
+
+    return Stream.of(
+        SourceMethod.staticMethod(
+            List.of(SINGLETON, PROVIDES),
+            binding.getInterface(),
+            methodName,
+            List.of(new SourceParameter(binding.getElements(), "elements")),
+            wrapper));
+  }
+
+  /**
+   * Contributions to lazy sets are providers of the implementation, which are only called when an
+   * iteration of the lazy set reaches them.
+   */
+  private SourceMember compileLazySetElement(SingleBinding binding, SourceCounters counters) {
+    String methodName =
+        String.format("%sTo%s", binding.implementationSimpleName, binding.interfaceSimpleName);
+    SourceExpression provision =
+        SourceExpression.of(String.format("%s.get()", binding.implementationSimpleName));
+
+    return SourceMethod.staticMethod(
+        List.of(PROVIDES, SourceAnnotation.of("dagger.multibindings.IntoSet")),
+        String.format("%s.Element<%s>", LAZY_SET, binding.interfaceFullName),
+        methodName,
+        List.of(
+            new SourceParameter(
+                toProvider(binding.implementationFullName), binding.implementationSimpleName)),
+        SourceExpression.supplied(
+            LAZY_SET + ".element",
+            List.of(),
+            Objects.isNull(counters)
+                ? provision
+                : counters.count(
+                    String.format(
+                        "%s <- %s", binding.interfaceFullName, binding.implementationFullName),
+                    provision)));
   }
 
-  private String compileMultiBindingForWrapperComponent(MultiBinding binding) {
+  /**
+   * Contributions to enum maps are entries with the enum constant as key, which are copied into an
+   * {@code EnumMap} by the binding of the map.
+   */
+  private SourceMember compileEnumMapEntry(SingleBinding binding, SourceCounters counters) {
+    String methodName =
+        String.format("%sTo%s", binding.implementationSimpleName, binding.interfaceSimpleName);
+    SourceExpression instance = SourceExpression.of(binding.implementationSimpleName);
+
+    if (Objects.nonNull(counters)) {
+      instance =
+          counters.count(
+              String.format("%s <- %s", binding.interfaceFullName, binding.implementationFullName),
+              instance);
+    }
+    SourceExpression value = instance;
+
+    return SourceMethod.staticMethod(
+        List.of(PROVIDES, SourceAnnotation.of("dagger.multibindings.IntoSet")),
+        String.format(
+            "java.util.Map.Entry<%s, %s>", binding.getEnumKey().orElseThrow(), binding.interfaceFullName),
+        methodName,
+        List.of(new SourceParameter(binding.implementationFullName, binding.implementationSimpleName)),
+        emitter -> {
+          emitter.append("java.util.Map.entry(").append(binding.multiBindKey.get()).append(", ");
+          value.emit(emitter);
+          emitter.append(')');
+        });
+  }
+
+  /**
+   * Contributions of a module to a list are sorted by priority and then by the name of the
+   * implementation and contributed as a single run with the sort keys as array constants, so the
+   * binding of the list only has to merge the runs of different modules. A module may contribute to
+   * lists of interfaces with the same simple name, so the method is named after the qualified name.
+   */
+  private SourceMember compileListRun(List<SingleBinding> contributions, SourceCounters counters) {
+    List<SingleBinding> sorted =
+        contributions.stream()
+            .sorted(
+                Comparator.<SingleBinding>comparingInt(binding -> binding.multiBindPriority)
+                    .thenComparing(binding -> binding.implementationFullName))
+            .collect(Collectors.toList());
+    SingleBinding first = sorted.get(0);
+    String interfaceName = first.interfaceFullName;
+    if (interfaceName.contains("<")) {
+      interfaceName = interfaceName.substring(0, interfaceName.indexOf('<'));
+    }
+    String methodName = interfaceName.replace('.', '_') + "ListRun";
+    List<SourceExpression> values =
+        sorted.stream()
+            .map(
+                binding -> {
+                  SourceExpression instance = SourceExpression.of(binding.implementationSimpleName);
+
+                  return Objects.isNull(counters)
+                      ? instance
+                      : counters.count(
+                          String.format(
+                              "%s <- %s", binding.interfaceFullName, binding.implementationFullName),
+                          instance);
+                })
+            .collect(Collectors.toList());
+
+    return SourceMethod.staticMethod(
+        List.of(PROVIDES, SourceAnnotation.of("dagger.multibindings.IntoSet")),
+        String.format("%s.Run<%s>", PRIORITY_LIST, first.interfaceFullName),
+        methodName,
+        sorted.stream()
+            .map(
+                binding ->
+                    new SourceParameter(
+                        binding.implementationFullName, binding.implementationSimpleName))
+            .collect(Collectors.toList()),
+        emitter -> {
+          emitter
+              .append(PRIORITY_LIST)
+              .append(".run(new int[] {")
+              .append(
+                  sorted.stream()
+                      .map(binding -> String.valueOf(binding.multiBindPriority))
+                      .collect(Collectors.joining(", ")))
+              .append("}, new String[] {")
+              .append(
+                  sorted.stream()
+                      .map(binding -> SourceExpression.literal(binding.implementationFullName))
+                      .collect(Collectors.joining(", ")))
+              .append('}');
+          for (SourceExpression value : values) {
+            emitter.append(", ");
+            value.emit(emitter);
+          }
+          emitter.append(')');
+        });
+  }
+
+  private SourceMember compileMultiBindingForWrapperComponent(MultiBinding binding) {
     String methodName =
         binding.interfaceSimpleName.substring(0, 1).toLowerCase()
             + binding.interfaceSimpleName.substring(1);
 
-    return String.format("%s %s();", binding.getInterfaceLazy(), methodName);
+    return SourceMethod.abstractMethod(List.of(), binding.getInterfaceLazy(), methodName, List.of());
   }
 
-  private String compileMultiBindingForWrapperComponent(SingleBinding binding) {
+  private SourceMember compileMultiBindingForWrapperComponent(SingleBinding binding) {
     String methodName =
         binding.interfaceSimpleName.substring(0, 1).toLowerCase()
             + binding.interfaceSimpleName.substring(1);
 
     switch (binding.multiBind.get()) {
       case STRING_MAP:
-        return String.format(
-            "java.util.Map<String, %s> %s();", binding.interfaceFullName, methodName);
+        return SourceMethod.abstractMethod(
+            List.of(), String.format("java.util.Map<String, %s>", binding.interfaceFullName), methodName, List.of());
       case CLASS_MAP:
-        return String.format(
-            "java.util.Map<Class<?>, %s> %s();", binding.interfaceFullName, methodName);
+        return SourceMethod.abstractMethod(
+            List.of(), String.format("java.util.Map<Class<?>, %s>", binding.interfaceFullName), methodName, List.of());
       case SET:
+      case LAZY_SET:
+      case ENUM_MAP:
+      case LIST:
       default:
-        return String.format("java.util.Set<%s> %s();", binding.interfaceFullName, methodName);
+        return SourceMethod.abstractMethod(
+            List.of(), binding.getElements(), methodName, List.of());
     }
   }
 
   // TODO: maps
-  private String compileMultiBindingForEncapsulatedModule(MultiBinding binding) {
+  private SourceMember compileMultiBindingForEncapsulatedModule(Module module, MultiBinding binding) {
     String methodName =
         binding.interfaceSimpleName.substring(0, 1).toLowerCase()
             + binding.interfaceSimpleName.substring(1);
@@ -510,34 +1022,29 @@ public class DaggerAutoCompiler {
 
     switch (binding.multiBind) {
       case STRING_MAP:
-        throw new IllegalStateException(
-            "Encapsulation of Map multibindings is currently not supported.");
-        // return String.format("// java.util.Map<String, %s> %s();", binding.interfaceFullName,
-        // methodName);
       case CLASS_MAP:
         throw new IllegalStateException(
             "Encapsulation of Map multibindings is currently not supported.");
-        // return String.format("// java.util.Map<Class<?>, %s> %s();", binding.interfaceFullName,
-        // methodName);
       case SET:
       default:
-        return String.format(
-            "@jakarta.inject.Singleton\n"
-                + "@dagger.Provides\n"
-                + "@dagger.multibindings.ElementsIntoSet\n"
-                + "static java.util.Set<%1$s> %2$sExternal(%3$s externalMultiBindings) {\n"
-                + "\treturn externalMultiBindings.%2$s()%4$s;\n"
-                + "}",
-            binding.interfaceFullName,
-            methodName,
-            externalMultiBindings,
-            binding.lazy ? ".get()" : "");
+        return SourceMethod.staticMethod(
+            List.of(SINGLETON, PROVIDES, ELEMENTS_INTO_SET),
+            binding.getElements(),
+            methodName + "External",
+            List.of(new SourceParameter(externalMultiBindings, "externalMultiBindings")),
+            recordMultiBinding(
+                module,
+                binding.getElements(),
+                SourceExpression.of(
+                    String.format(
+                        "externalMultiBindings.%s()%s", methodName, binding.lazy ? ".get()" : ""))));
     }
   }
 
-  private String compileExternalMultiBindingsWrapper(List<MultiBinding> bindings, List<Map.Entry<String, String>> injections) {
+  private SourceMember compileExternalMultiBindingsWrapper(List<MultiBinding> bindings, List<SourceParameter> injections) {
     String externalMultiBindings = "ExternalMultiBindings";
-    return Stream.concat(bindings.stream()
+    List<SourceMember> methods = Stream.concat(bindings.stream()
+        .filter(binding -> !binding.providers)
         .map(
             binding -> {
               String methodName =
@@ -545,65 +1052,52 @@ public class DaggerAutoCompiler {
                       + binding.interfaceSimpleName.substring(1);
               switch (binding.multiBind) {
                 case STRING_MAP:
-                  throw new IllegalStateException(
-                      "Encapsulation of Map multibindings is currently not supported.");
-                  // return String.format("// java.util.Map<String, %s> %s();",
-                  // binding.interfaceFullName,
-                  // methodName);
                 case CLASS_MAP:
                   throw new IllegalStateException(
                       "Encapsulation of Map multibindings is currently not supported.");
-                  // return String.format("// java.util.Map<Class<?>, %s> %s();",
-                  // binding.interfaceFullName,
-                  // methodName);
                 case SET:
                 default:
-                  return String.format("\t%s %s();", binding.getInterfaceLazy(), methodName);
+                  return SourceMethod.abstractMethod(List.of(), binding.getInterfaceLazy(), methodName, List.of());
               }
             }),
             injections.stream()
-                .map(entry -> String.format("\t%s %s();", entry.getKey(), entry.getValue())))
-        .collect(
-            Collectors.joining(
-                "\n", String.format("interface %s {\n", externalMultiBindings), "\n}"));
+                .map(injection -> SourceMethod.abstractMethod(List.of(), injection.type, injection.name, List.of())))
+        .collect(Collectors.toList());
+
+    return new SourceType(
+        List.of(), false, externalMultiBindings, Layout.COMPACT, "", "\t", List.of(methods));
   }
 
   // TODO: maps
-  private String compileMultiBindingForWrapperModule(SingleBinding binding, String componentName) {
+  private SourceMember compileMultiBindingForWrapperModule(SingleBinding binding, String componentName) {
     String methodName =
         binding.interfaceSimpleName.substring(0, 1).toLowerCase()
             + binding.interfaceSimpleName.substring(1);
 
     switch (binding.multiBind.get()) {
       case STRING_MAP:
-        throw new IllegalStateException(
-            "Encapsulation of Map multibindings is currently not supported.");
-        // return String.format("// java.util.Map<String, %s> %s();", binding.interfaceFullName,
-        // methodName);
       case CLASS_MAP:
         throw new IllegalStateException(
             "Encapsulation of Map multibindings is currently not supported.");
-        // return String.format("// java.util.Map<Class<?>, %s> %s();", binding.interfaceFullName,
-        // methodName);
       case SET:
       default:
-        return String.format(
-            "@jakarta.inject.Singleton\n"
-                + "@dagger.Provides\n"
-                + "@dagger.multibindings.ElementsIntoSet\n"
-                + "static java.util.Set<%1$s> %2$s(%3$s component) {\n"
-                + "\treturn component.%2$s();\n"
-                + "}",
-            binding.interfaceFullName, methodName, componentName);
+        return SourceMethod.staticMethod(
+            List.of(SINGLETON, PROVIDES, ELEMENTS_INTO_SET),
+            binding.getElements(),
+            methodName,
+            List.of(new SourceParameter(componentName, "component")),
+            SourceExpression.of(String.format("component.%s()", methodName)));
     }
   }
 
-  private String compileIntoSetOrMap(SingleBinding binding) {
+  private List<SourceAnnotation> compileIntoSetOrMap(SingleBinding binding) {
     if (binding.multiBind.isPresent()) {
-      // TODO: check for duplicate keys
       switch (binding.multiBind.get()) {
         case SET:
-          return "@dagger.multibindings.IntoSet\n";
+        case LAZY_SET:
+        case ENUM_MAP:
+        case LIST:
+          return List.of(SourceAnnotation.of("dagger.multibindings.IntoSet"));
         case STRING_MAP:
           String stringKey =
               binding
@@ -614,9 +1108,9 @@ public class DaggerAutoCompiler {
                           new IllegalStateException(
                               "Missing @AutoBind mapKeyString for "
                                   + binding.implementationFullName));
-          return String.format(
-              "@dagger.multibindings.IntoMap\n@dagger.multibindings.StringKey(\"%s\")\n",
-              stringKey);
+          return List.of(
+              SourceAnnotation.of("dagger.multibindings.IntoMap"),
+              SourceAnnotation.of("dagger.multibindings.StringKey", SourceExpression.literal(stringKey)));
         case CLASS_MAP:
           String classKey =
               binding
@@ -628,11 +1122,11 @@ public class DaggerAutoCompiler {
                           new IllegalStateException(
                               "Missing @AutoBind mapKeyClass for "
                                   + binding.implementationFullName));
-          return String.format(
-              "@dagger.multibindings.IntoMap\n@dagger.multibindings.ClassKey(%s.class)\n",
-              classKey);
+          return List.of(
+              SourceAnnotation.of("dagger.multibindings.IntoMap"),
+              SourceAnnotation.of("dagger.multibindings.ClassKey", String.format("%s.class", classKey)));
       }
     }
-    return "";
+    return List.of();
   }
 }
@@ -1,80 +1,248 @@
 package com.github.azahnen.dagger;
 
-import com.github.azahnen.dagger.annotations.AutoBind;
-import com.github.azahnen.dagger.annotations.AutoModule;
-import com.github.azahnen.dagger.annotations.AutoMultiBind;
 import com.github.azahnen.dagger.annotations.AutoMultiBind.Type;
-import dagger.assisted.Assisted;
-import dagger.assisted.AssistedFactory;
-import dagger.assisted.AssistedInject;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
-import jakarta.inject.Inject;
 import javax.lang.model.element.*;
-import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeMirror;
 import java.lang.annotation.Annotation;
-import java.util.AbstractMap.SimpleEntry;
 import java.util.*;
-import java.util.Map.Entry;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 class DaggerAutoParser {
 
+    /**
+     * Canonical order of the bindings of a module: single bindings before multi bindings, each
+     * ordered by their originating element. The bindings of a single element keep the order of its
+     * supertypes.
+     */
+    static final Comparator<Binding> BINDING_ORDER =
+            Comparator.comparing((Binding binding) -> binding instanceof MultiBinding)
+                    .thenComparing(Binding::getOriginatingElement, RoundIndex.CANONICAL_ORDER);
+
     private final Map<Class<? extends Annotation>, TypeElement> annotationTypes;
     private final ProcessingEnvironment processingEnv;
+    private final LibraryTypeCache libraryTypes;
+    private final BindingIndex bindingIndex;
+    private final ProcessorStats stats;
+    private TypeHierarchy typeHierarchy;
+    private InjectionCache injectionCache;
+    private AutoAnnotations autoAnnotations;
+    private final List<Module> accumulatedModules;
+    private final List<Binding> accumulatedBindings;
+    private final Set<Element> accumulatedMultiBindElements;
+    private final Set<String> deferredElements;
+    private final Set<String> additionalPackages;
+    private int collectedModules;
+    private RoundEnvironment firstRound;
 
     DaggerAutoParser(
             Map<Class<? extends Annotation>, TypeElement> annotationTypes,
-            ProcessingEnvironment processingEnv) {
+            ProcessingEnvironment processingEnv,
+            ProcessorStats stats) {
         this.annotationTypes = annotationTypes;
         this.processingEnv = processingEnv;
+        this.stats = stats;
+        this.libraryTypes = new LibraryTypeCache(processingEnv.getFiler(), processingEnv.getElementUtils(), stats);
+        this.bindingIndex = new BindingIndex(processingEnv.getFiler());
+        this.accumulatedModules = new ArrayList<>();
+        this.accumulatedBindings = new ArrayList<>();
+        this.accumulatedMultiBindElements = new TreeSet<>(RoundIndex.CANONICAL_ORDER);
+        this.deferredElements = new TreeSet<>();
+        this.additionalPackages = new TreeSet<>();
     }
 
     List<Module> parse(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
-        List<Module> modules = new ArrayList<>();
+        return parse(annotations, roundEnvironment, false);
+    }
+
+    /**
+     * @param reversed if true, the indexed elements of the round are visited in reverse order, only
+     *     used to verify that the generated sources do not depend on the order of parsing, see {@link
+     *     #BINDING_ORDER}
+     */
+    List<Module> parse(
+            Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment, boolean reversed) {
+        startRound();
+
+        RoundIndex index = RoundIndex.of(getRoundElements(roundEnvironment), autoAnnotations);
+        RoundIndex roundIndex = reversed ? index.reversed() : index;
+
+        List<Module> predefinedModules = stats.time("parseModules", () -> parseModules(roundIndex.autoModuleElements));
+        List<Binding> bindings =
+                stats.time(
+                        "parseBindings",
+                        () -> parseBindings(
+                                roundIndex,
+                                roundIndex.autoMultiBindElements,
+                                getForeignMultiBindings(predefinedModules)));
+
+        return stats.time("parseGroupModules", () -> groupModules(predefinedModules, bindings));
+    }
+
+    /**
+     * Parses the elements of a round and keeps the resulting bindings until {@link #collect()} is
+     * called. Elements whose supertypes cannot be resolved yet are deferred to the next round. In the
+     * last round they are parsed like in the default mode, the compiler reports the missing types.
+     *
+     * @return true if the round contained new annotated elements
+     */
+    boolean accumulate(RoundEnvironment roundEnvironment) {
+        startRound();
+
+        List<Element> candidates = new ArrayList<>();
+        deferredElements.stream()
+                .map(name -> processingEnv.getElementUtils().getTypeElement(name))
+                .filter(Objects::nonNull)
+                .forEach(candidates::add);
+        deferredElements.clear();
+        List<Element> roundElements = getRoundElements(roundEnvironment);
+        candidates.addAll(roundElements);
+
+        List<Element> elements = new ArrayList<>();
+
+        for (Element element : candidates) {
+            if (!roundEnvironment.processingOver()
+                    && element instanceof TypeElement
+                    && typeHierarchy.hasErrorTypes(element.asType())) {
+                deferredElements.add(((TypeElement) element).getQualifiedName().toString());
+            } else {
+                elements.add(element);
+            }
+        }
+
+        RoundIndex roundIndex = RoundIndex.of(elements, autoAnnotations);
+
+        accumulatedModules.addAll(stats.time("parseModules", () -> parseModules(roundIndex.autoModuleElements)));
+        accumulatedMultiBindElements.addAll(roundIndex.autoMultiBindElements);
+        accumulatedBindings.addAll(
+                stats.time(
+                        "parseBindings",
+                        () -> parseBindings(
+                                roundIndex,
+                                accumulatedMultiBindElements,
+                                getForeignMultiBindings(accumulatedModules))));
 
-        Set<? extends Element> autoModuleElements =
-                roundEnvironment.getElementsAnnotatedWith(annotationTypes.get(AutoModule.class));
-        Set<? extends Element> autoBindElements =
-                roundEnvironment.getElementsAnnotatedWith(annotationTypes.get(AutoBind.class));
-        Set<? extends Element> autoMultiBindElements =
-                roundEnvironment.getElementsAnnotatedWith(annotationTypes.get(AutoMultiBind.class));
+        return !roundElements.isEmpty();
+    }
+
+    /**
+     * @return true if elements are deferred to the next round
+     */
+    boolean hasDeferred() {
+        return !deferredElements.isEmpty();
+    }
 
-        List<Module> predefinedModules = parseModules(autoModuleElements);
-        // TODO: also pass multiBindings from module to parseBindings
-        List<String> foreignMultiBindings = predefinedModules.stream()
+    /**
+     * @return true if bindings or modules were accumulated since the last {@link #collect()}
+     */
+    boolean hasPending() {
+        return !accumulatedBindings.isEmpty() || accumulatedModules.size() > collectedModules;
+    }
+
+    /**
+     * @return the modules for the bindings accumulated since the last call, the declarations of
+     *     modules from earlier rounds are still applied
+     */
+    List<Module> collect() {
+        List<Module> predefinedModules =
+                accumulatedModules.stream().map(Module::copy).collect(Collectors.toList());
+        List<Module> modules =
+                stats.time("parseGroupModules", () -> groupModules(predefinedModules, accumulatedBindings));
+
+        accumulatedBindings.clear();
+        this.collectedModules = accumulatedModules.size();
+
+        return modules;
+    }
+
+    /**
+     * @param packageNames packages that are added to the elements of the first round, used for
+     *     compiled package-info classes, which cannot be passed to javac for processing
+     */
+    void addPackages(Collection<String> packageNames) {
+        additionalPackages.addAll(packageNames);
+    }
+
+    private List<Element> getRoundElements(RoundEnvironment roundEnvironment) {
+        List<Element> elements = new ArrayList<>(RoundIndex.getAnnotatedElements(roundEnvironment, annotationTypes));
+
+        libraryTypes.addSources(roundEnvironment.getRootElements());
+        if (Objects.isNull(firstRound)) {
+            this.firstRound = roundEnvironment;
+        }
+        if (roundEnvironment == firstRound) {
+            additionalPackages.stream()
+                    .map(packageName -> processingEnv.getElementUtils().getPackageElement(packageName))
+                    .filter(Objects::nonNull)
+                    .forEach(elements::add);
+        }
+
+        return elements;
+    }
+
+    private void startRound() {
+        this.typeHierarchy =
+                new TypeHierarchy(processingEnv.getTypeUtils(), processingEnv.getElementUtils(), libraryTypes);
+        this.injectionCache = new InjectionCache(processingEnv.getTypeUtils());
+        this.autoAnnotations =
+                new AutoAnnotations(
+                        annotationTypes, processingEnv.getTypeUtils(), processingEnv.getElementUtils(), libraryTypes);
+    }
+
+    // TODO: also pass multiBindings from module to parseBindings
+    private Map<String, MultiBinding> getForeignMultiBindings(List<Module> predefinedModules) {
+        return predefinedModules.stream()
                 .flatMap(module -> module.bindings.stream())
                 .filter(binding -> binding instanceof MultiBinding)
-                .map(binding -> ((MultiBinding) binding).interfaceFullName)
-                .collect(Collectors.toList());
+                .map(binding -> (MultiBinding) binding)
+                .collect(
+                        Collectors.toMap(
+                                binding -> binding.interfaceFullName,
+                                Function.identity(),
+                                (first, second) -> first,
+                                LinkedHashMap::new));
+    }
+
+    private List<Module> groupModules(List<Module> predefinedModules, List<Binding> bindings) {
+        List<Module> modules = new ArrayList<>();
+        Map<String, Module> predefinedModulesByPackage =
+                predefinedModules.stream()
+                        .collect(
+                                Collectors.toMap(
+                                        module -> module.packageName,
+                                        Function.identity(),
+                                        (first, second) -> first,
+                                        LinkedHashMap::new));
 
-        List<Binding> bindings = parseBindings(annotations, autoBindElements, autoMultiBindElements, foreignMultiBindings);
+        List<Binding> sortedBindings = new ArrayList<>(bindings);
+        sortedBindings.sort(BINDING_ORDER);
 
         if (predefinedModules.size() == 1 && predefinedModules.get(0).single) {
-            predefinedModules.get(0).bindings.addAll(bindings);
+            predefinedModules.get(0).bindings.addAll(sortedBindings);
 
             modules.add(predefinedModules.get(0));
-        } else if (!bindings.isEmpty()) {
+        } else if (!sortedBindings.isEmpty()) {
             List<Module> mods =
-                    bindings.stream().collect(Collectors.groupingBy(Binding::getPackage)).entrySet().stream()
+                    sortedBindings.stream()
+                            .collect(Collectors.groupingBy(Binding::getPackage, TreeMap::new, Collectors.toList()))
+                            .entrySet().stream()
                             .map(
                                     entry -> {
                                         Module module =
-                                                predefinedModules.stream()
-                                                        .filter(module1 -> Objects.equals(module1.packageName, entry.getKey()))
-                                                        .findFirst()
-                                                        .orElseGet(
-                                                                () ->
-                                                                        new Module(
-                                                                                entry.getKey(),
-                                                                                "AutoBindings",
-                                                                                new ArrayList<>(),
-                                                                                false,
-                                                                                false));
+                                                predefinedModulesByPackage.computeIfAbsent(
+                                                        entry.getKey(),
+                                                        packageName ->
+                                                                new Module(
+                                                                        packageName,
+                                                                        "AutoBindings",
+                                                                        new ArrayList<>(),
+                                                                        false,
+                                                                        false,
+                                                                        Optional.empty()));
                                         module.bindings.addAll(entry.getValue());
 
                                         return module;
@@ -83,17 +251,20 @@ class DaggerAutoParser {
             modules.addAll(mods);
         }
 
+        modules.sort(Comparator.comparing(Module::qualifiedName));
+
         return modules;
     }
 
-    private List<Module> parseModules(Set<? extends Element> autoModuleElements) {
+    private List<Module> parseModules(Set<Element> autoModuleElements) {
         return autoModuleElements.stream()
                 .map(
                         element -> {
+                            AutoAnnotations.ModuleDef autoModule = autoAnnotations.getAutoModule(element).orElseThrow();
                             // TODO: annotation in module-info is ignored by processor
                             String packageName =
                                     element.getKind() == ElementKind.MODULE
-                                            ? getAnnotationValue(element, AutoModule.class, "pkg", String.class)
+                                            ? autoModule.pkg
                                             .filter(
                                                     pkg ->
                                                             !pkg.isBlank()
@@ -108,112 +279,74 @@ class DaggerAutoParser {
                                             .getPackageOf(element)
                                             .getQualifiedName()
                                             .toString();
-                            String moduleName =
-                                    getAnnotationValue(element, AutoModule.class, "name", String.class)
-                                            .orElse("AutoBindings");
+                            String moduleName = autoModule.name.orElse("AutoBindings");
                             // TODO: throw if more than one single
-                            boolean isSingle =
-                                    element.getKind() == ElementKind.MODULE
-                                            || getAnnotationValue(element, AutoModule.class, "single", Boolean.class)
-                                            .orElse(false);
-                            boolean isEncapsulate =
-                                    element.getKind() == ElementKind.MODULE
-                                            || getAnnotationValue(element, AutoModule.class, "encapsulate", Boolean.class)
-                                            .orElse(false);
+                            boolean isSingle = element.getKind() == ElementKind.MODULE || autoModule.single;
+                            boolean isEncapsulate = element.getKind() == ElementKind.MODULE || autoModule.encapsulate;
                             List<Binding> multiBindings =
-                                    getAnnotationValueClassArray(element, AutoModule.class, "multiBindings").stream()
-                                            .map(typeMirror -> processingEnv.getTypeUtils().asElement(typeMirror))
+                                    autoModule.multiBindings.stream()
                                             .map(this::parseMultiBinding)
                                             .collect(Collectors.toList());
 
-                            return new Module(packageName, moduleName, multiBindings, isSingle, isEncapsulate);
+                            return new Module(
+                                    packageName, moduleName, multiBindings, isSingle, isEncapsulate, Optional.of(element));
                         })
                 .collect(Collectors.toUnmodifiableList());
     }
 
     private List<Binding> parseBindings(
-            Set<? extends TypeElement> annotations,
-            Set<? extends Element> autoBindElements,
-            Set<? extends Element> autoMultiBindElements,
-            List<String> foreignMultiBindings) {
-        return annotations.stream()
-                .flatMap(
-                        annotation -> {
-                            if (isSame(annotation, AutoBind.class)) {
-                                return autoBindElements.stream()
-                                        .flatMap(
-                                                element -> parseSingleBindings(element, autoMultiBindElements, foreignMultiBindings).stream());
-                            } else if (isSame(annotation, AutoMultiBind.class)) {
-                                return autoMultiBindElements.stream().map(this::parseMultiBinding);
-                            }
-                            return Stream.empty();
-                        })
+            RoundIndex roundIndex,
+            Set<Element> autoMultiBindElements,
+            Map<String, MultiBinding> foreignMultiBindings) {
+        return Stream.concat(
+                        roundIndex.autoBindElements.stream()
+                                .flatMap(
+                                        element -> parseSingleBindings(element, autoMultiBindElements, foreignMultiBindings).stream()),
+                        roundIndex.autoMultiBindElements.stream().map(this::parseMultiBinding))
                 .collect(Collectors.toList());
     }
 
     private List<SingleBinding> parseSingleBindings(
-            Element element, Set<? extends Element> autoMultiBindElements,
-            List<String> foreignMultiBindings) {
-        Map<String, TypeMirror> interfaces =
-                getAnnotationValueClassArray(element, AutoBind.class, "interfaces").stream()
-                        .collect(
-                                Collectors.toMap(
-                                        typeMirror ->
-                                                getFullNameWithGenericsAsWildcard(
-                                                        processingEnv.getTypeUtils().asElement(typeMirror)),
-                                        Function.identity(),
-                                        (first, second) -> first));
-
-        interfaces
-                .keySet()
-                .forEach(
-                        intrfc -> {
-                            if (getSuperTypes(element.asType())
-                                    .noneMatch(
-                                            superType ->
-                                                    Objects.equals(
-                                                            getFullNameWithGenericsAsWildcard(
-                                                                    processingEnv.getTypeUtils().asElement(superType)),
-                                                            intrfc))) {
-                                throw new IllegalStateException(
-                                        "Invalid entry in @AutoBind interfaces, "
-                                                + intrfc
-                                                + " is not implemented/extended by "
-                                                + element.toString()
-                                                + ".\nValid interfaces are "
-                                                + getSuperTypes(element.asType())
-                                                .map(
-                                                        typeMirror ->
-                                                                getFullNameWithGenericsAsWildcard(
-                                                                        processingEnv.getTypeUtils().asElement(typeMirror)))
-                                                .collect(Collectors.joining(", ")));
-                            }
-                        });
+            Element element, Set<Element> autoMultiBindElements,
+            Map<String, MultiBinding> foreignMultiBindings) {
+        Set<String> interfaces =
+                autoAnnotations.getAutoBind(element).orElseThrow().interfaces.stream()
+                        .map(typeHierarchy::getWildcardName)
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        List<TypeMirror> superTypes = typeHierarchy.getInterfaces(element.asType());
+        Set<String> superTypeNames =
+                superTypes.stream()
+                        .map(typeHierarchy::getWildcardName)
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        interfaces.forEach(
+                intrfc -> {
+                    if (!superTypeNames.contains(intrfc)) {
+                        throw new IllegalStateException(
+                                "Invalid entry in @AutoBind interfaces, "
+                                        + intrfc
+                                        + " is not implemented/extended by "
+                                        + element.toString()
+                                        + ".\nValid interfaces are "
+                                        + String.join(", ", superTypeNames));
+                    }
+                });
 
         Set<String> excludes =
-                getSuperTypes(element.asType())
+                superTypes.stream()
                         .map(typeMirror -> processingEnv.getTypeUtils().asElement(typeMirror))
-                        .flatMap(multiElement -> getAnnotationValueClassArray(multiElement, AutoMultiBind.class, "exclude").stream()
-                                .map(typeMirror -> getFullNameWithGenericsAsWildcard(
-                                        processingEnv.getTypeUtils().asElement(typeMirror))))
+                        .flatMap(multiElement -> autoAnnotations.getAutoMultiBind(multiElement).stream())
+                        .flatMap(multiBind -> multiBind.exclude.stream())
+                        .map(typeHierarchy::getWildcardName)
                         .collect(Collectors.toSet());
 
-        // TypeMirror.equals does not work, so we have to use a map to get distinct values
-        Map<String, TypeMirror> bindInterfaces =
-                getSuperTypes(element.asType())
-                        .filter(
-                                superType ->
-                                        interfaces.isEmpty()
-                                                || interfaces.containsKey(
-                                                getFullNameWithGenericsAsWildcard(
-                                                        processingEnv.getTypeUtils().asElement(superType))))
-                        .filter(superType -> !excludes.contains(getFullNameWithGenericsAsWildcard(
-                                processingEnv.getTypeUtils().asElement(superType))))
-                        .collect(
-                                Collectors.toMap(
-                                        TypeMirror::toString, Function.identity(), (first, second) -> first));
-
-        return bindInterfaces.values().stream()
+        return superTypes.stream()
+                .filter(
+                        superType ->
+                                interfaces.isEmpty()
+                                        || interfaces.contains(typeHierarchy.getWildcardName(superType)))
+                .filter(superType -> !excludes.contains(typeHierarchy.getWildcardName(superType)))
                 .map(
                         bindInterface ->
                                 parseSingleBinding(
@@ -225,30 +358,48 @@ class DaggerAutoParser {
     }
 
     private SingleBinding parseSingleBinding(
-            Element bindInterface, Element implementation, Set<? extends Element> autoMultiBindElements,
-            List<String> foreignMultiBindings) {
+            Element bindInterface, Element implementation, Set<Element> autoMultiBindElements,
+            Map<String, MultiBinding> foreignMultiBindings) {
         String packageName =
                 processingEnv.getElementUtils().getPackageOf(implementation).getQualifiedName().toString();
-        String interfaceFullName = getFullNameWithGenericsAsWildcard(bindInterface);
+        String interfaceFullName = typeHierarchy.getWildcardName(bindInterface);
         String implementationFullName = implementation.toString();
         String interfaceSimpleName = bindInterface.getSimpleName().toString();
         String implementationSimpleName =
                 implementation.getSimpleName().toString().substring(0, 1).toLowerCase()
                         + implementation.getSimpleName().toString().substring(1);
+        boolean multiBindOtherModule = foreignMultiBindings.containsKey(interfaceFullName);
+        Optional<AutoAnnotations.MultiBind> autoMultiBind = autoAnnotations.getAutoMultiBind(bindInterface);
         Optional<Type> multiBind =
-                getAnnotationValueEnum(
-                        bindInterface, AutoMultiBind.class, "value", Type.class, Type::valueOf)
-                        .or(
-                                () ->
-                                        hasAnnotation(bindInterface, AutoMultiBind.class) || foreignMultiBindings.contains(interfaceFullName)
-                                                ? Optional.of(Type.SET)
-                                                : Optional.empty());
+                autoMultiBind
+                        .map(annotation -> annotation.type)
+                        .or(() -> multiBindOtherModule ? Optional.of(Type.SET) : Optional.empty())
+                        .or(() -> bindingIndex.getForeignMultiBinding(interfaceFullName).map(declaration -> declaration.type));
+        boolean multiBindProviders =
+                autoMultiBind
+                        .map(annotation -> annotation.providers)
+                        .or(() -> bindingIndex.getForeignMultiBinding(interfaceFullName).map(declaration -> declaration.providers))
+                        .orElse(false);
         Optional<String> multiBindKey =
-                multiBind.flatMap(type -> getMultiBindKey(type, implementation));
+                multiBind.flatMap(
+                        type ->
+                                getMultiBindKey(
+                                        type,
+                                        autoMultiBind.flatMap(annotation -> annotation.enumKey),
+                                        interfaceFullName,
+                                        implementation));
+        int multiBindKeyDepth =
+                multiBind.filter(type -> type == Type.CLASS_MAP).isPresent()
+                        ? multiBindKey.map(typeHierarchy::getDepth).orElse(0)
+                        : 0;
+        int multiBindPriority =
+                multiBind.filter(type -> type == Type.LIST).isPresent()
+                        ? autoAnnotations.getAutoBind(implementation).map(bind -> bind.priority).orElse(0)
+                        : 0;
         boolean multiBindSameModule = autoMultiBindElements.contains(bindInterface);
-        boolean multiBindOtherModule = foreignMultiBindings.contains(interfaceFullName);
 
-        Map<String, String> injections = getInjections((TypeElement) implementation);
+        Map<String, String> injections =
+                stats.time("getInjections", () -> injectionCache.getInjections((TypeElement) implementation));
 
         return new SingleBinding(
                 packageName,
@@ -258,17 +409,26 @@ class DaggerAutoParser {
                 interfaceSimpleName,
                 multiBind,
                 multiBindKey,
+                multiBindKeyDepth,
+                multiBindPriority,
                 multiBindSameModule,
                 multiBindOtherModule,
-                injections);
+                multiBindProviders,
+                injections,
+                implementation);
     }
 
-    private Optional<String> getMultiBindKey(Type multiBind, Element implementation) {
-        // TODO: check for duplicate keys
+    /**
+     * @return the key of a map multibinding, for enum keys the qualified name of the constant
+     */
+    private Optional<String> getMultiBindKey(
+            Type multiBind, Optional<String> enumKey, String interfaceFullName, Element implementation) {
+        Optional<AutoAnnotations.Bind> autoBind = autoAnnotations.getAutoBind(implementation);
+        // duplicate keys are reported by the processor, which sees the bindings of all modules
         switch (multiBind) {
             case STRING_MAP:
                 String stringKey =
-                        getAnnotationValue(implementation, AutoBind.class, "mapKeyString", String.class)
+                        autoBind.flatMap(bind -> bind.mapKeyString)
                                 .filter(mapKeyString -> !mapKeyString.isBlank())
                                 .orElseThrow(
                                         () ->
@@ -277,223 +437,84 @@ class DaggerAutoParser {
                 return Optional.of(stringKey);
             case CLASS_MAP:
                 String classKey =
-                        getAnnotationValueClass(implementation, AutoBind.class, "mapKeyClass")
+                        autoBind.flatMap(bind -> bind.mapKeyClass)
                                 .filter(mapKeyClass -> !Objects.equals(mapKeyClass, Void.class.getCanonicalName()))
                                 .orElseThrow(
                                         () ->
                                                 new IllegalStateException(
                                                         "Missing @AutoBind mapKeyClass for " + implementation.toString()));
                 return Optional.of(classKey);
+            case ENUM_MAP:
+                TypeElement enumType = getEnumKey(enumKey, interfaceFullName);
+                String enumConstant =
+                        autoBind.flatMap(bind -> bind.mapKeyEnum)
+                                .filter(mapKeyEnum -> !mapKeyEnum.isBlank())
+                                .orElseThrow(
+                                        () ->
+                                                new IllegalStateException(
+                                                        "Missing @AutoBind mapKeyEnum for " + implementation.toString()));
+                if (enumType.getEnclosedElements().stream()
+                        .noneMatch(
+                                element ->
+                                        element.getKind() == ElementKind.ENUM_CONSTANT
+                                                && element.getSimpleName().contentEquals(enumConstant))) {
+                    throw new IllegalStateException(
+                            String.format(
+                                    "@AutoBind mapKeyEnum %s of %s is not a constant of %s",
+                                    enumConstant,
+                                    implementation.toString(),
+                                    enumType.getQualifiedName()));
+                }
+                return Optional.of(enumType.getQualifiedName() + "." + enumConstant);
         }
         return Optional.empty();
     }
 
-    private Map<String, String> getInjections(TypeElement element) {
-        return processingEnv.getElementUtils().getAllMembers(element).stream()
-                .filter(member -> hasAnnotation(member, Inject.class) || hasAnnotation(member, AssistedInject.class))
-                .flatMap(
-                        member -> {
-                            if (member.getKind() == ElementKind.CONSTRUCTOR) {
-                                return ((ExecutableElement) member)
-                                        .getParameters().stream()
-                                        .filter(variableElement ->
-                                                !hasAnnotation(variableElement, Assisted.class))
-                                        .flatMap(
-                                                variableElement -> {
-                                                    if (hasAnnotation(
-                                                            processingEnv
-                                                                    .getTypeUtils()
-                                                                    .asElement(variableElement.asType()),
-                                                            AssistedFactory.class)) {
-                                                        return getProductInjections(variableElement);
-                                                    }
-
-                                                    return Stream.of(new SimpleEntry<>(
-                                                            variableElement.asType().toString(),
-                                                            getCommonVariableName(variableElement)));
-                                                });
-                            }
-
-                            return Stream.empty();
-                        })
-                .collect(Collectors.toMap(Entry::getKey, Entry::getValue, (first, second) -> first));
-    }
+    private TypeElement getEnumKey(Optional<String> enumKey, String interfaceFullName) {
+        String enumName =
+                enumKey.filter(name -> !Objects.equals(name, Void.class.getCanonicalName()))
+                        .orElseThrow(
+                                () ->
+                                        new IllegalStateException(
+                                                "Missing @AutoMultiBind enumKey for " + interfaceFullName));
+        TypeElement enumType = processingEnv.getElementUtils().getTypeElement(enumName);
+
+        if (Objects.isNull(enumType) || enumType.getKind() != ElementKind.ENUM) {
+            throw new IllegalStateException(
+                    String.format("@AutoMultiBind enumKey %s of %s is not an enum", enumName, interfaceFullName));
+        }
 
-    private Stream<Map.Entry<String, String>> getProductInjections(VariableElement element) {
-        return processingEnv.getTypeUtils().asElement(element.asType()).getEnclosedElements().stream()
-                .filter(member -> member.getKind() == ElementKind.METHOD)
-                .flatMap(
-                        member -> getInjections((TypeElement) processingEnv.getTypeUtils().asElement(((ExecutableElement) member)
-                                .getReturnType())).entrySet().stream());
+        return enumType;
     }
 
     private MultiBinding parseMultiBinding(Element bindInterface) {
         String packageName =
                 processingEnv.getElementUtils().getPackageOf(bindInterface).getQualifiedName().toString();
-        String interfaceFullName = getFullNameWithGenericsAsWildcard(bindInterface);
+        String interfaceFullName = typeHierarchy.getWildcardName(bindInterface);
         String interfaceSimpleName = bindInterface.getSimpleName().toString();
-        Type type =
-                getAnnotationValueEnum(
-                        bindInterface, AutoMultiBind.class, "value", Type.class, Type::valueOf)
-                        .orElse(Type.SET);
-        boolean lazy =
-                getAnnotationValue(bindInterface, AutoMultiBind.class, "lazy", Boolean.class).orElse(true);
-
-        return new MultiBinding(packageName, interfaceFullName, interfaceSimpleName, type, lazy);
-    }
-
-    private Stream<TypeMirror> getSuperTypes(TypeMirror type) {
-        return processingEnv.getTypeUtils().directSupertypes(type).stream()
-                .flatMap(superType -> Stream.concat(Stream.of(superType), getSuperTypes(superType)))
-                .filter(
-                        superType ->
-                                processingEnv
-                                        .getTypeUtils()
-                                        .asElement(superType)
-                                        .getKind()
-                                        .isInterface()) // TODO does it work?
-                .filter(superType -> !Objects.equals(superType.toString(), "java.lang.Object"));
-    }
-
-    private String getCommonVariableName(VariableElement variableElement) {
-        String name = variableElement.asType().toString();
-        boolean isMulti = DaggerAutoCompiler.isMulti(name);
-        name = DaggerAutoCompiler.noMulti(DaggerAutoCompiler.noLazy(name));
-        int ni = name.lastIndexOf('.');
-        int ti = name.indexOf('<');
-        name = name.substring(ni > 0 ? ni + 1 : 0, ti > 0 ? ti : name.length());
-        name += isMulti && !name.endsWith("s") ? "s" : "";
-        name = name.substring(0, 1).toLowerCase() + name.substring(1);
-
-        return name;
-    }
-
-    private String getFullNameWithGenericsAsWildcard(Element element) {
-        if (element.asType() instanceof DeclaredType) {
-            List<? extends TypeMirror> typeArguments =
-                    ((DeclaredType) element.asType()).getTypeArguments();
-            String typeString =
-                    typeArguments.isEmpty()
-                            ? ""
-                            : typeArguments.stream()
-                            .map(TypeMirror::toString)
-                            .map(type -> type.length() == 1 ? "?" : type)
-                            .collect(Collectors.joining(", ", "<", ">"));
-      /*int numTypeArguments = ((DeclaredType) element.asType()).getTypeArguments().size();
-      if (numTypeArguments > 0) {
-        return element.toString()
-            + IntStream.range(0, numTypeArguments)
-                .mapToObj(i -> "?")
-                .collect(Collectors.joining(", ", "<", ">"));
-      }*/
-            return element.toString() + typeString;
-        }
-        return element.toString();
-    }
-
-    private boolean hasAnnotation(Element element, Class<? extends Annotation> annotation) {
-        return Objects.nonNull(element.getAnnotation(annotation));
-    }
-
-    private <T> Optional<T> getAnnotationValue(
-            Element element, Class<? extends Annotation> annotationType, String name, Class<T> type) {
-        return getAnnotationValue(element, annotationType, name)
-                .filter(annotationValue -> type.isAssignableFrom(annotationValue.getClass()))
-                .map(type::cast);
-    }
-
-    private Optional<String> getAnnotationValueClass(
-            Element element, Class<? extends Annotation> annotationType, String name) {
-        return getAnnotationValue(element, annotationType, name)
-                .filter(
-                        annotationValue ->
-                                Objects.nonNull(
-                                        processingEnv.getElementUtils().getTypeElement(annotationValue.toString())))
-                .map(
-                        annotationValue ->
-                                processingEnv
-                                        .getElementUtils()
-                                        .getTypeElement(annotationValue.toString())
+        Optional<AutoAnnotations.MultiBind> autoMultiBind = autoAnnotations.getAutoMultiBind(bindInterface);
+        Type type = autoMultiBind.map(multiBind -> multiBind.type).orElse(Type.SET);
+        boolean lazy = autoMultiBind.map(multiBind -> multiBind.lazy).orElse(true);
+        boolean providers = autoMultiBind.map(multiBind -> multiBind.providers).orElse(false);
+        Optional<String> enumKey =
+                type == Type.ENUM_MAP
+                        ? Optional.of(
+                                getEnumKey(autoMultiBind.flatMap(multiBind -> multiBind.enumKey), interfaceFullName)
                                         .getQualifiedName()
-                                        .toString());
-    }
-
-    @SuppressWarnings("unchecked")
-    private List<TypeMirror> getAnnotationValueClassArray(
-            Element element, Class<? extends Annotation> annotationType, String name) {
-        return getAnnotationValue(element, annotationType, name)
-                .filter(
-                        annotationValues ->
-                                annotationValues instanceof List
-                                        && ((List<? extends AnnotationValue>) annotationValues)
-                                        .stream()
-                                        .allMatch(
-                                                annotationValue ->
-                                                        Objects.nonNull(
-                                                                processingEnv
-                                                                        .getElementUtils()
-                                                                        .getTypeElement(
-                                                                                annotationValue.getValue().toString()))))
-                .map(
-                        annotationValues ->
-                                ((List<? extends AnnotationValue>) annotationValues)
-                                        .stream()
-                                        .map(
-                                                annotationValue ->
-                                                        processingEnv
-                                                                .getElementUtils()
-                                                                .getTypeElement(annotationValue.getValue().toString())
-                                                                .asType())
-                                        .collect(Collectors.toList()))
-                .orElse(List.of());
-    }
+                                        .toString())
+                        : Optional.empty();
 
-    private <T extends Enum<T>> Optional<T> getAnnotationValueEnum(
-            Element element,
-            Class<? extends Annotation> annotationType,
-            String name,
-            Class<T> type,
-            Function<String, T> parser) {
-        return getAnnotationValue(element, annotationType, name)
-                .filter(
-                        annotationValue -> {
-                            if (annotationValue instanceof VariableElement
-                                    && ((VariableElement) annotationValue).getKind() == ElementKind.ENUM_CONSTANT) {
-                                Element enclosingElement =
-                                        ((VariableElement) annotationValue).getEnclosingElement();
-                                TypeElement typeElement =
-                                        processingEnv.getElementUtils().getTypeElement(type.getCanonicalName());
-                                return processingEnv
-                                        .getTypeUtils()
-                                        .isAssignable(enclosingElement.asType(), typeElement.asType());
-                            }
-                            return false;
-                        })
-                .map(
-                        annotationValue -> {
-                            String enumValue = ((VariableElement) annotationValue).getSimpleName().toString();
-                            return parser.apply(enumValue);
-                        });
-    }
-
-    private Optional<Object> getAnnotationValue(
-            Element element, Class<? extends Annotation> annotationType, String name) {
-        return element.getAnnotationMirrors().stream()
-                .filter(annotationMirror -> isSame(annotationMirror.getAnnotationType(), annotationType))
-                .flatMap(annotationMirror -> annotationMirror.getElementValues().entrySet().stream())
-                .filter(entry -> Objects.equals(entry.getKey().getSimpleName().toString(), name))
-                .map(entry1 -> entry1.getValue().getValue())
-                .findFirst();
-    }
+        boolean foreign = bindingIndex.getForeignMultiBinding(interfaceFullName).isPresent();
 
-    private boolean isSame(TypeElement annotation1, Class<? extends Annotation> annotation2) {
-        return isSame(annotation1.asType(), annotation2);
-    }
-
-    private boolean isSame(TypeMirror annotation1, Class<? extends Annotation> annotation2) {
-        return annotationTypes.containsKey(annotation2)
-                && processingEnv
-                .getTypeUtils()
-                .isSameType(annotation1, annotationTypes.get(annotation2).asType());
+        return new MultiBinding(
+                packageName,
+                interfaceFullName,
+                interfaceSimpleName,
+                type,
+                lazy,
+                providers,
+                enumKey,
+                bindInterface,
+                foreign);
     }
 }
@@ -7,34 +7,149 @@ import com.google.auto.service.AutoService;
 
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.CharArrayWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 @AutoService(Processor.class)
 public class DaggerAutoProcessor extends AbstractProcessor {
 
+    /**
+     * Number of threads used to generate the sources of different modules in parallel. Sources are
+     * generated sequentially on the compiler thread if not set or less than 2.
+     */
+    static final String OPTION_PARALLELISM = "dagger.auto.parallelism";
+
+    /**
+     * Maximum number of single bindings per generated module. Larger modules are split into shard
+     * modules that are included by the original one. Modules are never split if not set or less
+     * than 1.
+     */
+    static final String OPTION_SHARD_SIZE = "dagger.auto.shardSize";
+
+    /**
+     * If true, bindings are collected over rounds and every source is written exactly once, in the
+     * first round without new annotated elements and without deferred elements. Elements with
+     * supertypes that cannot be resolved yet are deferred to the next round. The compiler only starts
+     * another round if a source was generated, so without other processors that is the final round,
+     * whose sources are not subject to annotation processing. Components using the generated modules
+     * then have to be processed in a separate compilation and encapsulated modules are reported as
+     * errors, since their components would never be generated.
+     */
+    static final String OPTION_ACCUMULATE = "dagger.auto.accumulate";
+
+    /**
+     * Maximum number of entries in the {@link LibraryTypeCache}, which is shared by all compilations
+     * in the same JVM. The cache is disabled if set to 0.
+     */
+    static final String OPTION_LIBRARY_CACHE_SIZE = "dagger.auto.libraryCacheSize";
+
+    /**
+     * Comma separated packages whose package-info is processed in the first round, used by {@link
+     * DaggerAutoBatch}.
+     */
+    static final String OPTION_PACKAGES = "dagger.auto.packages";
+
+    /**
+     * Path of a JSON report with timings and counts per round and per module, a short summary is
+     * also printed as a note. Nothing is measured if not set. Counting the calls of Types and
+     * Elements slows down parsing, so the parse timings are higher than in a compilation without
+     * this option, see {@link ProcessorStats}.
+     */
+    static final String OPTION_STATS = "dagger.auto.stats";
+
+    /**
+     * If true, the generated wrapper modules of encapsulated modules record JFR events for the
+     * creation of the encapsulated components and the materialization of multibindings passed into
+     * them, see {@link com.github.azahnen.dagger.jfr.DaggerAutoEvents}.
+     */
+    static final String OPTION_JFR_EVENTS = "dagger.auto.jfrEvents";
+
+    /**
+     * If true, bindings are generated as {@code @Provides} methods instead of {@code @Binds} methods
+     * and every provision is counted, see {@link
+     * com.github.azahnen.dagger.counters.ProvisionCounters}. Nothing is counted if not set.
+     */
+    static final String OPTION_PROVISION_COUNTERS = "dagger.auto.provisionCounters";
+
+    /**
+     * Directory for a dependency graph report per module, written as {@code <module>.json} and
+     * {@code <module>.dot}, see {@link GraphReport}. No report is written if not set.
+     */
+    static final String OPTION_GRAPH_REPORT = "dagger.auto.graphReport";
+
+    /**
+     * If true, every round is parsed and compiled a second time with the indexed elements visited in
+     * reverse order and an error is reported for every generated source that is not byte-identical.
+     * The second pass is not included in the stats. Not supported together with {@link
+     * #OPTION_ACCUMULATE}, a warning is reported and nothing is verified.
+     */
+    static final String OPTION_VERIFY_REPRODUCIBLE = "dagger.auto.verifyReproducible";
+
+    /**
+     * If true, a dispatcher class {@code <Interface>Dispatcher} is generated for every string-keyed
+     * and class-keyed multibinding. String keys are looked up with a {@code switch} on the keys known
+     * at compile time, see {@link SourceDispatcher}. Classes are resolved to the value of their most
+     * specific key supertype once and cached, see {@link SourceClassDispatcher}.
+     */
+    static final String OPTION_DISPATCHERS = "dagger.auto.dispatchers";
+
     private static final Set<Class<? extends Annotation>> SUPPORTED_ANNOTATIONS =
             Set.of(AutoBind.class, AutoMultiBind.class, AutoModule.class);
+    private static final Set<String> SUPPORTED_OPTIONS =
+            Set.of(
+                    OPTION_PARALLELISM,
+                    OPTION_SHARD_SIZE,
+                    OPTION_ACCUMULATE,
+                    OPTION_LIBRARY_CACHE_SIZE,
+                    OPTION_PACKAGES,
+                    OPTION_STATS,
+                    OPTION_JFR_EVENTS,
+                    OPTION_PROVISION_COUNTERS,
+                    OPTION_GRAPH_REPORT,
+                    OPTION_VERIFY_REPRODUCIBLE,
+                    OPTION_DISPATCHERS);
 
     private final Map<Class<? extends Annotation>, TypeElement> annotationTypes;
     private final Map<String, JavaFileObject> sourceFiles;
-    private final DaggerAutoCompiler compiler;
+    private final Set<String> indexResources;
+    private final SourceEmitter emitter;
+    private DaggerAutoCompiler compiler;
     private DaggerAutoParser parser;
+    private ForkJoinPool pool;
+    private boolean accumulate;
+    private boolean verifyReproducible;
+    private ProcessorStats stats;
 
     public DaggerAutoProcessor() {
         this.annotationTypes = new HashMap<>();
         this.sourceFiles = new ConcurrentHashMap<>();
-        this.compiler = new DaggerAutoCompiler();
+        this.indexResources = new HashSet<>();
+        this.emitter = new SourceEmitter();
     }
 
     @Override
@@ -45,12 +160,43 @@ public class DaggerAutoProcessor extends AbstractProcessor {
             SUPPORTED_ANNOTATIONS.forEach(
                     annotation -> annotationTypes.put(annotation, getTypeElement(annotation)));
         }
-        this.parser = new DaggerAutoParser(annotationTypes, processingEnv);
+        int parallelism = getIntOption(OPTION_PARALLELISM, 1);
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        LibraryTypeCache.setMaxSize(
+                getIntOption(OPTION_LIBRARY_CACHE_SIZE, LibraryTypeCache.DEFAULT_MAX_SIZE));
+        this.accumulate = Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_ACCUMULATE));
+        this.verifyReproducible =
+                Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_VERIFY_REPRODUCIBLE));
+        if (verifyReproducible && accumulate) {
+            processingEnv.getMessager().printMessage(
+                    Kind.WARNING,
+                    String.format("Option %s is ignored together with %s", OPTION_VERIFY_REPRODUCIBLE, OPTION_ACCUMULATE));
+            this.verifyReproducible = false;
+        }
+        this.stats = new ProcessorStats(Objects.nonNull(processingEnv.getOptions().get(OPTION_STATS)));
+        this.compiler =
+                new DaggerAutoCompiler(
+                        pool,
+                        Math.max(getIntOption(OPTION_SHARD_SIZE, 0), 0),
+                        stats,
+                        Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_JFR_EVENTS)),
+                        Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_PROVISION_COUNTERS)),
+                        Boolean.parseBoolean(processingEnv.getOptions().get(OPTION_DISPATCHERS)));
+        this.parser = new DaggerAutoParser(annotationTypes, stats.instrument(processingEnv), stats);
+
+        String packages = processingEnv.getOptions().get(OPTION_PACKAGES);
+        if (Objects.nonNull(packages)) {
+            parser.addPackages(
+                    Arrays.stream(packages.split(","))
+                            .map(String::trim)
+                            .filter(packageName -> !packageName.isEmpty())
+                            .collect(Collectors.toList()));
+        }
     }
 
     @Override
     public Set<String> getSupportedOptions() {
-        return super.getSupportedOptions();
+        return SUPPORTED_OPTIONS;
     }
 
     @Override
@@ -66,31 +212,253 @@ public class DaggerAutoProcessor extends AbstractProcessor {
     @Override
     public boolean process(
             Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
-        List<Module> modules = parser.parse(annotations, roundEnvironment);
+        List<Module> modules;
+        stats.startRound();
 
-        Map<String, String> files = compiler.compile(modules);
+        if (accumulate) {
+            boolean newElements = parser.accumulate(roundEnvironment);
 
-        files.forEach(
-                (name, content) -> {
-                    try {
-                        if (!sourceFiles.containsKey(name)) {
-                            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(name);
-                            sourceFiles.put(name, sourceFile);
-                        }
+            if (!roundEnvironment.processingOver()
+                    && (newElements || parser.hasDeferred() || !parser.hasPending())) {
+                stats.endRound();
+                return true;
+            }
+            List<Module> collected = parser.hasPending() ? parser.collect() : List.of();
+            modules = roundEnvironment.processingOver() ? withoutEncapsulated(collected) : collected;
+        } else {
+            modules = parser.parse(annotations, roundEnvironment);
+        }
+
+        DaggerAutoCompiler.forEachDuplicateMapKey(
+                modules,
+                (binding, previous) -> processingEnv.getMessager().printMessage(
+                        Kind.ERROR,
+                        String.format(
+                                "Duplicate map key %s for %s, already contributed by %s",
+                                binding.multiBindKey.orElseThrow(),
+                                binding.interfaceFullName,
+                                previous.implementationFullName),
+                        binding.implementation));
 
-                        JavaFileObject sourceFile = sourceFiles.get(name);
+        Map<String, SourceFile> files =
+                accumulate ? withoutWrittenFiles(compiler.compile(modules)) : compiler.compile(modules);
+        Map<String, CharArrayWriter> rendered =
+                Objects.nonNull(pool) || verifyReproducible ? render(files) : Map.of();
 
-                        try (Writer writer = sourceFile.openWriter()) {
-                            writer.write(content);
+        if (verifyReproducible) {
+            verify(rendered, stats.exclude(() -> render(compiler.compile(parser.parse(annotations, roundEnvironment, true)))));
+        }
+
+        stats.time("writeSources", () -> {
+            files.forEach(
+                    (name, source) -> {
+                        try {
+                            if (!sourceFiles.containsKey(name)) {
+                                JavaFileObject sourceFile = processingEnv.getFiler()
+                                        .createSourceFile(name, source.originatingElements.toArray(new Element[0]));
+                                sourceFiles.put(name, sourceFile);
+                            }
+
+                            JavaFileObject sourceFile = sourceFiles.get(name);
+
+                            try (Writer writer = stats.count(name, sourceFile.openWriter())) {
+                                if (rendered.containsKey(name)) {
+                                    rendered.get(name).writeTo(writer);
+                                } else {
+                                    emitter.emit(source, writer);
+                                }
+                            }
+                        } catch (IOException e) {
+                            processingEnv.getMessager().printMessage(Kind.ERROR, e.getMessage());
                         }
-                    } catch (IOException e) {
-                        processingEnv.getMessager().printMessage(Kind.ERROR, e.getMessage());
-                    }
-                });
+                    });
+            return null;
+        });
+
+        if (Objects.nonNull(processingEnv.getOptions().get(OPTION_GRAPH_REPORT))) {
+            stats.time("writeGraphReport", () -> {
+                writeGraphReport(modules);
+                return null;
+            });
+        }
+
+        stats.time("writeIndex", () -> {
+            writeIndex(BindingIndex.encode(modules));
+            return null;
+        });
+
+        stats.endRound();
+
+        if (roundEnvironment.processingOver() && stats.isEnabled()) {
+            writeStats();
+        }
+
+        if (roundEnvironment.processingOver() && Objects.nonNull(pool)) {
+            pool.shutdown();
+        }
 
         return true;
     }
 
+    /**
+     * Sources written in the final round are not processed by Dagger, so the component of an
+     * encapsulated module, which is generated by this processor, would never be implemented.
+     */
+    private List<Module> withoutEncapsulated(List<Module> modules) {
+        return modules.stream()
+                .filter(module -> {
+                    if (!module.encapsulate) {
+                        return true;
+                    }
+                    String message = String.format(
+                            "Encapsulated module %s cannot be generated in the final round with %s, use the default mode",
+                            module.qualifiedName(), OPTION_ACCUMULATE);
+                    module.element.ifPresentOrElse(
+                            element -> processingEnv.getMessager().printMessage(Kind.ERROR, message, element),
+                            () -> processingEnv.getMessager().printMessage(Kind.ERROR, message));
+                    return false;
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * In accumulate mode every source is written once. Bindings that arrive after the source of their
+     * module was written cannot be added to it, so an error is reported instead.
+     */
+    private Map<String, SourceFile> withoutWrittenFiles(Map<String, SourceFile> files) {
+        Map<String, SourceFile> unwritten = new LinkedHashMap<>();
+
+        files.forEach((name, file) -> {
+            if (sourceFiles.containsKey(name)) {
+                processingEnv.getMessager().printMessage(
+                        Kind.ERROR,
+                        String.format(
+                                "Generated source %s was already written, bindings found in later rounds cannot be added with %s",
+                                name, OPTION_ACCUMULATE));
+            } else {
+                unwritten.put(name, file);
+            }
+        });
+
+        return unwritten;
+    }
+
+    /**
+     * Writes the {@link BindingIndex} resources of a round to the class output, so that downstream
+     * compilations can find the multibindings declared here. A resource can only be opened once, so
+     * a multibinding that is declared again in a later round keeps the resource of the first one.
+     */
+    private void writeIndex(List<BindingIndex.Resource> resources) {
+        for (BindingIndex.Resource resource : resources) {
+            if (!indexResources.add(resource.name)) {
+                continue;
+            }
+            try {
+                FileObject resourceFile = processingEnv.getFiler()
+                        .createResource(
+                                StandardLocation.CLASS_OUTPUT,
+                                "",
+                                resource.name,
+                                resource.originatingElements.toArray(new Element[0]));
+
+                try (OutputStream outputStream = resourceFile.openOutputStream()) {
+                    outputStream.write(resource.content);
+                }
+                stats.countBytes(resource.content.length);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Kind.ERROR, e.getMessage());
+            }
+        }
+    }
+
+    private void writeGraphReport(List<Module> modules) {
+        String path = processingEnv.getOptions().get(OPTION_GRAPH_REPORT);
+
+        for (Module module : modules) {
+            try {
+                new GraphReport(module).write(Paths.get(path));
+            } catch (IOException | InvalidPathException e) {
+                processingEnv.getMessager().printMessage(
+                        Kind.WARNING,
+                        String.format("Could not write graph report of %s to %s: %s", module.qualifiedName(), path, e.getMessage()));
+            }
+        }
+    }
+
+    private void writeStats() {
+        String path = processingEnv.getOptions().get(OPTION_STATS);
+
+        try {
+            stats.writeReport(Paths.get(path));
+        } catch (IOException | InvalidPathException e) {
+            processingEnv.getMessager().printMessage(
+                    Kind.WARNING, String.format("Could not write stats to %s: %s", path, e.getMessage()));
+        }
+        processingEnv.getMessager().printMessage(Kind.NOTE, stats.getSummary());
+    }
+
+    /**
+     * Renders the given files into memory, in parallel if a pool is available. The Filer is only
+     * accessed from the compiler thread.
+     */
+    private Map<String, CharArrayWriter> render(Map<String, SourceFile> files) {
+        Map<String, CharArrayWriter> rendered = new LinkedHashMap<>();
+
+        if (Objects.isNull(pool)) {
+            files.forEach((name, source) -> rendered.put(name, render(emitter, source)));
+
+            return rendered;
+        }
+
+        Map<String, ForkJoinTask<CharArrayWriter>> tasks = new LinkedHashMap<>();
+
+        files.forEach(
+                (name, source) ->
+                        tasks.put(name, pool.submit(() -> render(new SourceEmitter(), source))));
+
+        tasks.forEach((name, task) -> rendered.put(name, task.join()));
+
+        return rendered;
+    }
+
+    private static CharArrayWriter render(SourceEmitter emitter, SourceFile source) {
+        CharArrayWriter writer = new CharArrayWriter();
+        try {
+            emitter.emit(source, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer;
+    }
+
+    private void verify(Map<String, CharArrayWriter> expected, Map<String, CharArrayWriter> actual) {
+        Set<String> names = new TreeSet<>(expected.keySet());
+        names.addAll(actual.keySet());
+
+        for (String name : names) {
+            if (!expected.containsKey(name) || !actual.containsKey(name)
+                    || !Arrays.equals(expected.get(name).toCharArray(), actual.get(name).toCharArray())) {
+                processingEnv.getMessager().printMessage(
+                        Kind.ERROR, String.format("Generated source %s is not reproducible", name));
+            }
+        }
+    }
+
+    private int getIntOption(String name, int defaultValue) {
+        String value = processingEnv.getOptions().get(name);
+
+        if (Objects.isNull(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            processingEnv.getMessager().printMessage(
+                    Kind.WARNING, String.format("Invalid value for option %s: %s", name, value));
+            return defaultValue;
+        }
+    }
+
     private TypeElement getTypeElement(Class<?> clazz) {
         return processingEnv.getElementUtils().getTypeElement(clazz.getCanonicalName());
     }
@@ -0,0 +1,475 @@
+package com.github.azahnen.dagger;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Dependency graph of a single module, built from the constructor injections of its bindings.
+ * Every bound interface, every multibinding and every injected type that is not bound in the
+ * module is a node, edges point from an interface to the injections of its implementations.
+ * Injections of {@code Lazy}, {@code Provider}, maps of providers or lazy sets are deferred edges,
+ * they are not part of a construction chain.
+ */
+class GraphReport {
+
+    private static final List<String> DEFERRED =
+            List.of("dagger.Lazy<", "javax.inject.Provider<", "jakarta.inject.Provider<");
+    private static final Set<String> SCOPES = Set.of("javax.inject.Scope", "jakarta.inject.Scope");
+
+    enum Kind {SINGLE, MULTI, EXTERNAL}
+
+    private static final class Node {
+        final int id;
+        final String name;
+        final Map<String, Optional<String>> implementations;
+        /** deferred flag per dependency, an eager injection wins over a deferred one */
+        final Map<Node, Boolean> dependencies;
+        Kind kind;
+        int fanIn;
+        int depth;
+
+        Node(int id, String name) {
+            this.id = id;
+            this.name = name;
+            this.implementations = new LinkedHashMap<>();
+            this.dependencies = new LinkedHashMap<>();
+            this.kind = Kind.EXTERNAL;
+        }
+    }
+
+    private static final class Cycle {
+        final List<Node> members;
+        /** true if every path of the cycle contains a deferred edge */
+        final boolean deferred;
+
+        Cycle(List<Node> members, boolean deferred) {
+            this.members = members;
+            this.deferred = deferred;
+        }
+    }
+
+    private final String module;
+    private final List<Node> nodes;
+    private final Map<String, Node> nodesByKey;
+    private final List<Cycle> cycles;
+    private final List<Node> longestChain;
+    private final Map<Node, List<String>> singletonsByMultiBinding;
+
+    GraphReport(Module module) {
+        this.module = module.qualifiedName();
+        this.nodes = new ArrayList<>();
+        this.nodesByKey = new HashMap<>();
+
+        for (Binding binding : module.bindings) {
+            if (binding instanceof MultiBinding) {
+                node(binding.getInterface()).kind = Kind.MULTI;
+            } else if (binding instanceof SingleBinding) {
+                SingleBinding singleBinding = (SingleBinding) binding;
+                Node node =
+                        node(
+                                singleBinding.multiBind
+                                        .map(
+                                                type ->
+                                                        MultiBinding.formatInterface(
+                                                                type,
+                                                                singleBinding.getEnumKey(),
+                                                                singleBinding.interfaceFullName))
+                                        .orElse(singleBinding.interfaceFullName));
+
+                node.kind = singleBinding.multiBind.isPresent() ? Kind.MULTI : Kind.SINGLE;
+                node.implementations.put(singleBinding.implementationFullName, getScope(singleBinding.implementation));
+                singleBinding.injections.keySet().forEach(injection -> addDependency(node, injection));
+            }
+        }
+        nodes.forEach(node -> node.dependencies.keySet().forEach(dependency -> dependency.fanIn++));
+
+        List<List<Node>> eagerComponents = components(true);
+        Set<Node> eagerCycles = new HashSet<>();
+        eagerComponents.stream().filter(GraphReport::isCycle).forEach(eagerCycles::addAll);
+
+        this.cycles =
+                components(false).stream()
+                        .filter(GraphReport::isCycle)
+                        .map(members -> new Cycle(members, members.stream().noneMatch(eagerCycles::contains)))
+                        .collect(Collectors.toList());
+        this.longestChain = computeDepths(eagerComponents);
+        this.singletonsByMultiBinding = new LinkedHashMap<>();
+        nodes.stream()
+                .filter(node -> node.kind == Kind.MULTI)
+                .forEach(node -> singletonsByMultiBinding.put(node, getSingletonsOnPath(node)));
+    }
+
+    private Node node(String name) {
+        return nodesByKey.computeIfAbsent(
+                BindingGraph.normalize(name),
+                ignore -> {
+                    Node node = new Node(nodes.size(), name);
+                    nodes.add(node);
+                    return node;
+                });
+    }
+
+    private void addDependency(Node node, String injection) {
+        String type = injection;
+        boolean deferred = false;
+
+        for (boolean unwrapped = true; unwrapped; ) {
+            unwrapped = false;
+            for (String wrapper : DEFERRED) {
+                if (type.startsWith(wrapper) && type.endsWith(">")) {
+                    type = type.substring(wrapper.length(), type.length() - 1);
+                    deferred = true;
+                    unwrapped = true;
+                }
+            }
+        }
+        // lazy sets construct their elements on iteration
+        if (DaggerAutoCompiler.isLazySet(type)) {
+            deferred = true;
+        }
+        // a map of providers is the same node as the map
+        if (DaggerAutoCompiler.isMap(type)) {
+            String value = DaggerAutoCompiler.noMap(type);
+            String provided = DaggerAutoCompiler.noProvider(value);
+
+            if (!Objects.equals(value, provided)) {
+                type = type.substring(0, type.lastIndexOf(value)) + provided + ">";
+                deferred = true;
+            }
+        }
+
+        node.dependencies.merge(node(type), deferred, (first, second) -> first && second);
+    }
+
+    private static Optional<String> getScope(Element implementation) {
+        return implementation.getAnnotationMirrors().stream()
+                .map(AnnotationMirror::getAnnotationType)
+                .map(annotationType -> (TypeElement) annotationType.asElement())
+                .filter(
+                        annotationElement ->
+                                annotationElement.getAnnotationMirrors().stream()
+                                        .anyMatch(
+                                                meta ->
+                                                        SCOPES.contains(
+                                                                meta.getAnnotationType().asElement().toString())))
+                .map(annotationElement -> annotationElement.getQualifiedName().toString())
+                .findFirst();
+    }
+
+    /**
+     * @return the strongly connected components in reverse topological order, i.e. every component
+     * is listed after the components it depends on
+     */
+    private List<List<Node>> components(boolean eagerOnly) {
+        int[] index = new int[nodes.size()];
+        int[] lowLink = new int[nodes.size()];
+        boolean[] onStack = new boolean[nodes.size()];
+        Deque<Node> stack = new ArrayDeque<>();
+        Deque<Map.Entry<Node, List<Node>>> work = new ArrayDeque<>();
+        Map<Node, Integer> next = new HashMap<>();
+        List<List<Node>> components = new ArrayList<>();
+        int counter = 1;
+
+        for (Node root : nodes) {
+            if (index[root.id] > 0) {
+                continue;
+            }
+            index[root.id] = lowLink[root.id] = counter++;
+            stack.push(root);
+            onStack[root.id] = true;
+            work.push(Map.entry(root, successors(root, eagerOnly)));
+
+            while (!work.isEmpty()) {
+                Node node = work.peek().getKey();
+                List<Node> successors = work.peek().getValue();
+                int position = next.merge(node, 1, Integer::sum) - 1;
+
+                if (position < successors.size()) {
+                    Node successor = successors.get(position);
+
+                    if (index[successor.id] == 0) {
+                        index[successor.id] = lowLink[successor.id] = counter++;
+                        stack.push(successor);
+                        onStack[successor.id] = true;
+                        work.push(Map.entry(successor, successors(successor, eagerOnly)));
+                    } else if (onStack[successor.id]) {
+                        lowLink[node.id] = Math.min(lowLink[node.id], index[successor.id]);
+                    }
+                    continue;
+                }
+
+                work.pop();
+                if (!work.isEmpty()) {
+                    Node parent = work.peek().getKey();
+                    lowLink[parent.id] = Math.min(lowLink[parent.id], lowLink[node.id]);
+                }
+                if (lowLink[node.id] == index[node.id]) {
+                    List<Node> component = new ArrayList<>();
+                    Node member;
+                    do {
+                        member = stack.pop();
+                        onStack[member.id] = false;
+                        component.add(member);
+                    } while (member != node);
+                    component.sort((first, second) -> Integer.compare(first.id, second.id));
+                    components.add(component);
+                }
+            }
+        }
+
+        return components;
+    }
+
+    private static List<Node> successors(Node node, boolean eagerOnly) {
+        return node.dependencies.entrySet().stream()
+                .filter(dependency -> !eagerOnly || !dependency.getValue())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isCycle(List<Node> component) {
+        return component.size() > 1 || component.get(0).dependencies.containsKey(component.get(0));
+    }
+
+    /**
+     * Sets the construction depth of every node, i.e. the number of nodes on the longest eager
+     * chain starting at the node, where a cycle counts as a single step with all its members.
+     *
+     * @return the longest chain of the module
+     */
+    private List<Node> computeDepths(List<List<Node>> eagerComponents) {
+        int[] component = new int[nodes.size()];
+        int[] depth = new int[eagerComponents.size()];
+        int[] best = new int[eagerComponents.size()];
+        int longest = -1;
+
+        for (int i = 0; i < eagerComponents.size(); i++) {
+            for (Node member : eagerComponents.get(i)) {
+                component[member.id] = i;
+            }
+        }
+
+        for (int i = 0; i < eagerComponents.size(); i++) {
+            best[i] = -1;
+            for (Node member : eagerComponents.get(i)) {
+                for (Node successor : successors(member, true)) {
+                    int successorComponent = component[successor.id];
+                    if (successorComponent != i && (best[i] < 0 || depth[successorComponent] > depth[best[i]])) {
+                        best[i] = successorComponent;
+                    }
+                }
+            }
+            depth[i] = eagerComponents.get(i).size() + (best[i] < 0 ? 0 : depth[best[i]]);
+
+            for (Node member : eagerComponents.get(i)) {
+                member.depth = depth[i];
+            }
+            if (longest < 0 || depth[i] > depth[longest]) {
+                longest = i;
+            }
+        }
+
+        List<Node> chain = new ArrayList<>();
+        for (int i = longest; i >= 0; i = best[i]) {
+            chain.addAll(eagerComponents.get(i));
+        }
+
+        return chain;
+    }
+
+    /**
+     * @return the scoped implementations that are constructed when the given multibinding is
+     * materialized, i.e. that are eagerly reachable from it
+     */
+    private static List<String> getSingletonsOnPath(Node multiBinding) {
+        Set<String> singletons = new LinkedHashSet<>();
+        Set<Node> visited = new HashSet<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        visited.add(multiBinding);
+        queue.add(multiBinding);
+
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+
+            node.implementations.forEach(
+                    (implementation, scope) -> {
+                        if (scope.isPresent()) {
+                            singletons.add(implementation);
+                        }
+                    });
+            successors(node, true).stream().filter(visited::add).forEach(queue::add);
+        }
+
+        return List.copyOf(singletons);
+    }
+
+    /**
+     * Writes {@code <module>.json} and {@code <module>.dot} to the given directory.
+     */
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(module + ".json"), toJson().getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve(module + ".dot"), toDot().getBytes(StandardCharsets.UTF_8));
+    }
+
+    String toJson() {
+        StringBuilder json = new StringBuilder();
+
+        json.append("{\n")
+                .append("  \"module\": ").append(quote(module)).append(",\n")
+                .append("  \"longestChain\": ").append(names(longestChain)).append(",\n")
+                .append("  \"cycles\": [");
+        for (int i = 0; i < cycles.size(); i++) {
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\"members\": ").append(names(cycles.get(i).members))
+                    .append(", \"deferred\": ").append(cycles.get(i).deferred)
+                    .append("}");
+        }
+        json.append(cycles.isEmpty() ? "],\n" : "\n  ],\n").append("  \"interfaces\": [");
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {")
+                    .append("\"name\": ").append(quote(node.name))
+                    .append(", \"kind\": ").append(quote(node.kind.name().toLowerCase()))
+                    .append(", \"implementations\": [")
+                    .append(
+                            node.implementations.entrySet().stream()
+                                    .map(
+                                            implementation ->
+                                                    String.format(
+                                                            "{\"name\": %s, \"scope\": %s}",
+                                                            quote(implementation.getKey()),
+                                                            implementation.getValue()
+                                                                    .map(GraphReport::quote)
+                                                                    .orElse("null")))
+                                    .collect(Collectors.joining(", ")))
+                    .append("]")
+                    .append(", \"fanIn\": ").append(node.fanIn)
+                    .append(", \"fanOut\": ").append(node.dependencies.size())
+                    .append(", \"depth\": ").append(node.depth)
+                    .append(", \"dependencies\": [")
+                    .append(
+                            node.dependencies.entrySet().stream()
+                                    .map(
+                                            dependency ->
+                                                    String.format(
+                                                            "{\"name\": %s, \"deferred\": %s}",
+                                                            quote(dependency.getKey().name),
+                                                            dependency.getValue()))
+                                    .collect(Collectors.joining(", ")))
+                    .append("]}");
+        }
+        json.append(nodes.isEmpty() ? "],\n" : "\n  ],\n").append("  \"multiBindings\": [");
+        int i = 0;
+        for (Map.Entry<Node, List<String>> multiBinding : singletonsByMultiBinding.entrySet()) {
+            json.append(i++ == 0 ? "\n" : ",\n")
+                    .append("    {\"name\": ").append(quote(multiBinding.getKey().name))
+                    .append(", \"contributions\": ")
+                    .append(strings(multiBinding.getKey().implementations.keySet()))
+                    .append(", \"singletonsOnPath\": ").append(strings(multiBinding.getValue()))
+                    .append("}");
+        }
+        json.append(singletonsByMultiBinding.isEmpty() ? "]\n" : "\n  ]\n").append("}\n");
+
+        return json.toString();
+    }
+
+    /**
+     * Multibindings are drawn as folders and external types dashed, scoped bindings have a double
+     * border. Deferred edges are dashed, edges of the longest chain are bold and edges within
+     * cycles are red.
+     */
+    String toDot() {
+        StringBuilder dot = new StringBuilder();
+        Map<Node, Cycle> cycleOf = new HashMap<>();
+        cycles.forEach(cycle -> cycle.members.forEach(member -> cycleOf.put(member, cycle)));
+        Map<Node, Node> chainEdges = new HashMap<>();
+        for (int i = 1; i < longestChain.size(); i++) {
+            chainEdges.put(longestChain.get(i - 1), longestChain.get(i));
+        }
+
+        dot.append("digraph ").append(quote(module)).append(" {\n")
+                .append("  node [shape=box];\n");
+        for (Node node : nodes) {
+            List<String> label = new ArrayList<>();
+            label.add(node.name);
+            label.addAll(node.implementations.keySet());
+            label.add(String.format("depth %d, in %d, out %d", node.depth, node.fanIn, node.dependencies.size()));
+
+            List<String> attributes = new ArrayList<>();
+            attributes.add("label=" + label.stream().map(GraphReport::escape).collect(Collectors.joining("\\n", "\"", "\"")));
+            if (node.kind == Kind.MULTI) {
+                attributes.add("shape=folder");
+            } else if (node.kind == Kind.EXTERNAL) {
+                attributes.add("style=dashed");
+            }
+            if (node.implementations.values().stream().anyMatch(Optional::isPresent)) {
+                attributes.add("peripheries=2");
+            }
+
+            dot.append("  ").append(quote(node.name))
+                    .append(" [").append(String.join(", ", attributes)).append("];\n");
+        }
+        for (Node node : nodes) {
+            node.dependencies.forEach(
+                    (dependency, deferred) -> {
+                        List<String> attributes = new ArrayList<>();
+                        if (deferred) {
+                            attributes.add("style=dashed");
+                        }
+                        if (Objects.equals(chainEdges.get(node), dependency)) {
+                            attributes.add("penwidth=2");
+                        }
+                        if (cycleOf.containsKey(node) && cycleOf.get(node) == cycleOf.get(dependency)) {
+                            attributes.add("color=red");
+                        }
+
+                        dot.append("  ").append(quote(node.name)).append(" -> ").append(quote(dependency.name))
+                                .append(attributes.isEmpty() ? "" : " [" + String.join(", ", attributes) + "]")
+                                .append(";\n");
+                    });
+        }
+        dot.append("}\n");
+
+        return dot.toString();
+    }
+
+    private static String names(List<Node> nodes) {
+        return strings(nodes.stream().map(node -> node.name).collect(Collectors.toList()));
+    }
+
+    private static String strings(Iterable<String> values) {
+        List<String> quoted = new ArrayList<>();
+        values.forEach(value -> quoted.add(quote(value)));
+
+        return quoted.stream().collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    private static String quote(String value) {
+        return "\"" + escape(value) + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
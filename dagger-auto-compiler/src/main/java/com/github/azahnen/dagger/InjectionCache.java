@@ -0,0 +1,145 @@
+package com.github.azahnen.dagger;
+
+import dagger.assisted.Assisted;
+import dagger.assisted.AssistedFactory;
+import dagger.assisted.AssistedInject;
+import jakarta.inject.Inject;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Round-scoped cache of constructor injections. Only the constructors of a type are inspected and
+ * the product injections of an {@link AssistedFactory} are resolved once, no matter how many
+ * implementations depend on it. Factories that (transitively) reference each other are cut off at
+ * the first repetition.
+ */
+class InjectionCache {
+
+    private final Types types;
+    private final Map<TypeElement, Map<String, String>> injections;
+    private final Map<TypeElement, Map<String, String>> productInjections;
+    private final Set<TypeElement> inProgress;
+    private int cycles;
+
+    InjectionCache(Types types) {
+        this.types = types;
+        this.injections = new HashMap<>();
+        this.productInjections = new HashMap<>();
+        this.inProgress = new HashSet<>();
+        this.cycles = 0;
+    }
+
+    /**
+     * @return the non-assisted constructor parameters of the given type, mapped from type to
+     * variable name, including the product injections of injected assisted factories
+     */
+    Map<String, String> getInjections(TypeElement element) {
+        return memoize(injections, element, this::computeInjections);
+    }
+
+    private Map<String, String> getProductInjections(TypeElement factory) {
+        return memoize(productInjections, factory, this::computeProductInjections);
+    }
+
+    private Map<String, String> memoize(
+            Map<TypeElement, Map<String, String>> cache,
+            TypeElement element,
+            Function<TypeElement, Map<String, String>> computation) {
+        Map<String, String> cached = cache.get(element);
+
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+        if (!inProgress.add(element)) {
+            cycles++;
+            return Map.of();
+        }
+
+        int cyclesBefore = cycles;
+        Map<String, String> result = Collections.unmodifiableMap(computation.apply(element));
+
+        inProgress.remove(element);
+        // results that were cut off by a cycle are incomplete for any other entry point
+        if (cycles == cyclesBefore) {
+            cache.put(element, result);
+        }
+
+        return result;
+    }
+
+    private Map<String, String> computeInjections(TypeElement element) {
+        Map<String, String> result = new LinkedHashMap<>();
+
+        for (ExecutableElement constructor :
+                ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            if (!hasAnnotation(constructor, Inject.class)
+                    && !hasAnnotation(constructor, AssistedInject.class)) {
+                continue;
+            }
+            for (VariableElement parameter : constructor.getParameters()) {
+                if (hasAnnotation(parameter, Assisted.class)) {
+                    continue;
+                }
+                Element parameterType = types.asElement(parameter.asType());
+
+                if (Objects.nonNull(parameterType) && hasAnnotation(parameterType, AssistedFactory.class)) {
+                    getProductInjections((TypeElement) parameterType).forEach(result::putIfAbsent);
+                } else {
+                    result.putIfAbsent(parameter.asType().toString(), getCommonVariableName(parameter));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private Map<String, String> computeProductInjections(TypeElement factory) {
+        Map<String, String> result = new LinkedHashMap<>();
+
+        for (ExecutableElement method : ElementFilter.methodsIn(factory.getEnclosedElements())) {
+            Element product = types.asElement(method.getReturnType());
+
+            if (product instanceof TypeElement) {
+                getInjections((TypeElement) product).forEach(result::putIfAbsent);
+            }
+        }
+
+        return result;
+    }
+
+    private static String getCommonVariableName(VariableElement variableElement) {
+        String name = variableElement.asType().toString();
+        boolean isMulti =
+                DaggerAutoCompiler.isMulti(name)
+                        || DaggerAutoCompiler.isMap(name)
+                        || DaggerAutoCompiler.isLazySet(name)
+                        || DaggerAutoCompiler.isList(DaggerAutoCompiler.noLazy(name));
+        name = DaggerAutoCompiler.noList(DaggerAutoCompiler.noMulti(DaggerAutoCompiler.noLazy(name)));
+        name = DaggerAutoCompiler.noProvider(DaggerAutoCompiler.noMap(DaggerAutoCompiler.noLazySet(name)));
+        int ti = name.indexOf('<');
+        name = ti > 0 ? name.substring(0, ti) : name;
+        name = name.substring(name.lastIndexOf('.') + 1);
+        name += isMulti && !name.endsWith("s") ? "s" : "";
+        name = name.substring(0, 1).toLowerCase() + name.substring(1);
+
+        return name;
+    }
+
+    private static boolean hasAnnotation(Element element, Class<? extends Annotation> annotation) {
+        return Objects.nonNull(element.getAnnotation(annotation));
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.azahnen.dagger;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Cache of immutable metadata of types that are loaded from jars on the classpath. The cache is
+ * static, so it is shared by all compilations that reuse the processor classloader, e.g. in a
+ * Gradle daemon. Entries are keyed by a content hash of the jar, so a changed jar never hits stale
+ * entries, those are evicted with the least recently used ones.
+ *
+ * <p>The content hash is computed from the central directory of the jar, i.e. the names, sizes and
+ * CRC-32 checksums of all entries, which is read once per jar and compilation without inflating any
+ * entry. Unlike the path and modification time, it is stable when a jar is copied or touched, e.g.
+ * by a build cache, and changes whenever a class in the jar changes.
+ *
+ * <p>Types from packages that are compiled from source are never looked up. For other types the jar
+ * is resolved once per compilation from the class file of the type itself, so types of a package
+ * that is split across multiple jars, e.g. {@code javax.annotation}, are keyed by the jar they are
+ * loaded from.
+ *
+ * <p>Only strings and other compiler independent values may be cached, elements and type mirrors
+ * belong to a single compilation.
+ */
+class LibraryTypeCache {
+
+    static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private static final Map<String, Object> ENTRIES =
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                    return size() > maxSize;
+                }
+            };
+    private static volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    private final Filer filer;
+    private final Elements elements;
+    private final ProcessorStats stats;
+    private final Set<String> sourcePackages;
+    private final Map<String, Optional<String>> jarFingerprints;
+    private final Map<String, Optional<String>> typeFingerprints;
+
+    LibraryTypeCache(Filer filer, Elements elements, ProcessorStats stats) {
+        this.filer = filer;
+        this.elements = elements;
+        this.stats = stats;
+        this.sourcePackages = new HashSet<>();
+        this.jarFingerprints = new HashMap<>();
+        this.typeFingerprints = new HashMap<>();
+    }
+
+    /**
+     * @param size maximum number of cached entries, 0 disables the cache
+     */
+    static void setMaxSize(int size) {
+        synchronized (ENTRIES) {
+            maxSize = Math.max(size, 0);
+            ENTRIES.keySet().removeIf(key -> ENTRIES.size() > maxSize);
+        }
+    }
+
+    /**
+     * Marks the packages of the given root elements of a round as compiled from source, their types
+     * are neither looked up on the classpath nor cached.
+     */
+    void addSources(Collection<? extends Element> rootElements) {
+        for (Element element : rootElements) {
+            sourcePackages.add(elements.getPackageOf(element).getQualifiedName().toString());
+        }
+    }
+
+    /**
+     * @return true if the given element is a type loaded from a jar
+     */
+    boolean isLibraryType(Element element) {
+        return maxSize > 0 && getFingerprint(element).isPresent();
+    }
+
+    /**
+     * @return the cached value of the given kind for the given element if it is a library type,
+     * otherwise the computed value, which is cached for library types
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(String kind, Element element, Supplier<T> computation) {
+        Optional<String> fingerprint = maxSize > 0 ? getFingerprint(element) : Optional.empty();
+
+        if (fingerprint.isEmpty()) {
+            return computation.get();
+        }
+
+        String key = String.format("%s|%s|%s", kind, fingerprint.get(), element);
+        Object cached;
+
+        synchronized (ENTRIES) {
+            cached = ENTRIES.get(key);
+        }
+
+        if (Objects.nonNull(cached)) {
+            stats.countLibraryCache(true);
+            return (T) cached;
+        }
+
+        stats.countLibraryCache(false);
+        T value = computation.get();
+
+        synchronized (ENTRIES) {
+            ENTRIES.put(key, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * @return the fingerprint of the jar the given type was loaded from, empty if it is not a type
+     * or was not loaded from a jar, e.g. because it is compiled from source in this compilation
+     */
+    private Optional<String> getFingerprint(Element element) {
+        if (!(element instanceof TypeElement)) {
+            return Optional.empty();
+        }
+
+        String packageName = elements.getPackageOf(element).getQualifiedName().toString();
+
+        if (sourcePackages.contains(packageName)) {
+            return Optional.empty();
+        }
+
+        return typeFingerprints.computeIfAbsent(
+                elements.getBinaryName((TypeElement) element).toString(),
+                binaryName -> computeFingerprint(packageName, binaryName));
+    }
+
+    private Optional<String> computeFingerprint(String packageName, String binaryName) {
+        String relativeName =
+                (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                        + ".class";
+
+        try {
+            FileObject classFile = filer.getResource(StandardLocation.CLASS_PATH, packageName, relativeName);
+            URI uri = classFile.toUri();
+
+            if (!Objects.equals(uri.getScheme(), "jar")) {
+                return Optional.empty();
+            }
+
+            String jar = uri.getRawSchemeSpecificPart();
+            int separator = jar.indexOf("!/");
+
+            return jarFingerprints.computeIfAbsent(
+                    separator > 0 ? jar.substring(0, separator) : jar, LibraryTypeCache::fingerprintJar);
+        } catch (IOException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return a hash of the names, sizes and checksums of all entries of the given jar
+     */
+    private static Optional<String> fingerprintJar(String jarUri) {
+        try (ZipFile jar = new ZipFile(Paths.get(URI.create(jarUri)).toFile())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+
+            for (ZipEntry entry : Collections.list(jar.entries())) {
+                digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+                digest.update(buffer.clear().putLong(entry.getSize()).putLong(entry.getCrc()).array());
+            }
+
+            return Optional.of(new BigInteger(1, digest.digest()).toString(16));
+        } catch (IOException | IllegalArgumentException | FileSystemNotFoundException | NoSuchAlgorithmException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.github.azahnen.dagger;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import javax.lang.model.element.Element;
 
 class Module {
 
@@ -9,14 +12,22 @@ class Module {
   final List<Binding> bindings;
   final boolean single;
   final boolean encapsulate;
+  /** the element annotated with {@code @AutoModule}, if any */
+  final Optional<Element> element;
 
   public Module(String packageName, String moduleName, List<Binding> bindings, boolean single,
-      boolean encapsulate) {
+      boolean encapsulate, Optional<Element> element) {
     this.packageName = packageName;
     this.moduleName = moduleName;
     this.bindings = bindings;
     this.single = single;
     this.encapsulate = encapsulate;
+    this.element = element;
+  }
+
+  /** @return a module with the same declaration and a copy of the bindings */
+  Module copy() {
+    return new Module(packageName, moduleName, new ArrayList<>(bindings), single, encapsulate, element);
   }
 
   String qualifiedName() {
@@ -1,6 +1,8 @@
 package com.github.azahnen.dagger;
 
 import com.github.azahnen.dagger.annotations.AutoMultiBind.Type;
+import java.util.Optional;
+import javax.lang.model.element.Element;
 
 class MultiBinding implements Binding {
   final String packageName;
@@ -8,15 +10,39 @@ class MultiBinding implements Binding {
   final String interfaceSimpleName;
   final Type multiBind;
   final boolean lazy;
+  /** true if the multibinding is a map that is passed on as a map of providers */
+  final boolean providers;
+  /** for enum maps, the enum type of the keys */
+  final Optional<String> enumKey;
+  final Element bindInterface;
+  /** true if the multibinding is already declared by a module of another compilation */
+  final boolean foreign;
+  private final String interfaceName;
+  private final String interfaceNameLazy;
 
   MultiBinding(
       String packageName, String interfaceFullName, String interfaceSimpleName, Type multiBind,
-      boolean lazy) {
+      boolean lazy, boolean providers, Optional<String> enumKey, Element bindInterface,
+      boolean foreign) {
     this.packageName = packageName;
     this.interfaceFullName = interfaceFullName;
     this.interfaceSimpleName = interfaceSimpleName;
     this.multiBind = multiBind;
-    this.lazy = lazy;
+    this.lazy = lazy && multiBind != Type.LAZY_SET;
+    this.providers = providers && (multiBind == Type.STRING_MAP || multiBind == Type.CLASS_MAP);
+    this.enumKey = enumKey;
+    this.bindInterface = bindInterface;
+    this.foreign = foreign;
+    this.interfaceName = formatInterface(multiBind, enumKey, interfaceFullName);
+    // lazy sets, enum maps and lists are passed on as the set of their elements
+    String passedOn =
+        multiBind == Type.LAZY_SET || multiBind == Type.ENUM_MAP || multiBind == Type.LIST
+            ? DaggerAutoCompiler.toElements(multiBind, enumKey, interfaceFullName)
+            : interfaceName;
+    this.interfaceNameLazy =
+        this.providers
+            ? formatInterface(multiBind, enumKey, DaggerAutoCompiler.toProvider(interfaceFullName))
+            : this.lazy ? DaggerAutoCompiler.toLazy(passedOn) : passedOn;
   }
 
   @Override
@@ -24,25 +50,44 @@ class MultiBinding implements Binding {
     return packageName;
   }
 
+  @Override
+  public Element getOriginatingElement() {
+    return bindInterface;
+  }
+
   @Override
   public String getInterface() {
+    return interfaceName;
+  }
+
+  @Override
+  public String getInterfaceLazy() {
+    return interfaceNameLazy;
+  }
+
+  /**
+   * @return the type of the set that Dagger collects the contributions in, see {@link
+   *     DaggerAutoCompiler#toElements}
+   */
+  String getElements() {
+    return DaggerAutoCompiler.toElements(multiBind, enumKey, interfaceFullName);
+  }
+
+  static String formatInterface(Type multiBind, Optional<String> enumKey, String interfaceFullName) {
     switch (multiBind) {
       case STRING_MAP:
         return String.format("java.util.Map<String, %s>", interfaceFullName);
       case CLASS_MAP:
         return String.format("java.util.Map<Class<?>, %s>", interfaceFullName);
+      case LAZY_SET:
+        return String.format("%s<%s>", DaggerAutoCompiler.LAZY_SET, interfaceFullName);
+      case ENUM_MAP:
+        return String.format("java.util.Map<%s, %s>", enumKey.orElseThrow(), interfaceFullName);
+      case LIST:
+        return String.format("java.util.List<%s>", interfaceFullName);
       case SET:
       default:
         return String.format("java.util.Set<%s>", interfaceFullName);
     }
   }
-
-  @Override
-  public String getInterfaceLazy() {
-    if (lazy) {
-      return String.format("dagger.Lazy<%s>", getInterface());
-    }
-
-    return getInterface();
-  }
 }
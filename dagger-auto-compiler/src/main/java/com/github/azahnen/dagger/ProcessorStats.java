@@ -0,0 +1,410 @@
+package com.github.azahnen.dagger;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Timings and counts of a compilation, collected per round and per module if the stats option is
+ * set. Phases are timed inclusively, e.g. {@code parseBindings} contains {@code getInjections}.
+ * When disabled, every method only runs the given computation.
+ *
+ * <p>Calls of {@link Types} and {@link Elements} are counted through reflective proxies that the
+ * parser uses instead of the compiler's instances, see {@link #instrument}. Every call pays for a
+ * reflective invocation, so the timings of the {@code parse} phases include that overhead and are
+ * higher than without the stats option. The timings of the other phases do not use the proxies.
+ */
+class ProcessorStats {
+
+    static final ProcessorStats DISABLED = new ProcessorStats(false);
+
+    private final boolean enabled;
+    private final List<Round> rounds;
+    private final LongAdder typesCalls;
+    private final LongAdder elementsCalls;
+    private final LongAdder libraryCacheHits;
+    private final LongAdder libraryCacheMisses;
+    private Round round;
+    private volatile boolean excluded;
+
+    ProcessorStats(boolean enabled) {
+        this.enabled = enabled;
+        this.rounds = new ArrayList<>();
+        this.typesCalls = new LongAdder();
+        this.elementsCalls = new LongAdder();
+        this.libraryCacheHits = new LongAdder();
+        this.libraryCacheMisses = new LongAdder();
+        this.round = new Round(0);
+    }
+
+    private static final class Round {
+        final int number;
+        final Map<String, LongAdder> phaseNanos;
+        final Map<String, ModuleStats> modules;
+        final Map<String, ModuleStats> modulesByFile;
+        final LongAdder bytesWritten;
+        long typesCalls;
+        long elementsCalls;
+        long libraryCacheHits;
+        long libraryCacheMisses;
+
+        Round(int number) {
+            this.number = number;
+            this.phaseNanos = Collections.synchronizedMap(new LinkedHashMap<>());
+            this.modules = new ConcurrentHashMap<>();
+            this.modulesByFile = new ConcurrentHashMap<>();
+            this.bytesWritten = new LongAdder();
+        }
+    }
+
+    private static final class ModuleStats {
+        final String name;
+        final boolean encapsulate;
+        final int singleBindings;
+        final int multiBindings;
+        final LongAdder compileNanos;
+        final LongAdder bytesWritten;
+
+        ModuleStats(Module module) {
+            this.name = module.qualifiedName();
+            this.encapsulate = module.encapsulate;
+            this.singleBindings =
+                    (int) module.bindings.stream().filter(binding -> binding instanceof SingleBinding).count();
+            this.multiBindings =
+                    (int) module.bindings.stream().filter(binding -> binding instanceof MultiBinding).count();
+            this.compileNanos = new LongAdder();
+            this.bytesWritten = new LongAdder();
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the given environment, with {@link Types} and {@link Elements} that count their calls
+     * if enabled, at the cost of a reflective invocation per call
+     */
+    ProcessingEnvironment instrument(ProcessingEnvironment processingEnv) {
+        if (!enabled) {
+            return processingEnv;
+        }
+
+        Types types = counting(Types.class, processingEnv.getTypeUtils(), typesCalls);
+        Elements elements = counting(Elements.class, processingEnv.getElementUtils(), elementsCalls);
+
+        return delegate(
+                ProcessingEnvironment.class,
+                processingEnv,
+                (proxy, method, args) -> {
+                    if (Objects.equals(method.getName(), "getTypeUtils")) {
+                        return types;
+                    }
+                    if (Objects.equals(method.getName(), "getElementUtils")) {
+                        return elements;
+                    }
+                    return invoke(processingEnv, method, args);
+                });
+    }
+
+    void startRound() {
+        if (enabled) {
+            this.round = new Round(rounds.size() + 1);
+            rounds.add(round);
+            round.typesCalls = typesCalls.sum();
+            round.elementsCalls = elementsCalls.sum();
+            round.libraryCacheHits = libraryCacheHits.sum();
+            round.libraryCacheMisses = libraryCacheMisses.sum();
+        }
+    }
+
+    void endRound() {
+        if (enabled) {
+            round.typesCalls = typesCalls.sum() - round.typesCalls;
+            round.elementsCalls = elementsCalls.sum() - round.elementsCalls;
+            round.libraryCacheHits = libraryCacheHits.sum() - round.libraryCacheHits;
+            round.libraryCacheMisses = libraryCacheMisses.sum() - round.libraryCacheMisses;
+        }
+    }
+
+    /**
+     * Runs the given computation without recording its timings and counts, used for the second pass
+     * of the reproducibility check, which would otherwise double the numbers of the round.
+     */
+    <T> T exclude(Supplier<T> computation) {
+        if (!enabled) {
+            return computation.get();
+        }
+
+        long types = typesCalls.sum();
+        long elements = elementsCalls.sum();
+        long hits = libraryCacheHits.sum();
+        long misses = libraryCacheMisses.sum();
+        this.excluded = true;
+        try {
+            return computation.get();
+        } finally {
+            this.excluded = false;
+            typesCalls.add(types - typesCalls.sum());
+            elementsCalls.add(elements - elementsCalls.sum());
+            libraryCacheHits.add(hits - libraryCacheHits.sum());
+            libraryCacheMisses.add(misses - libraryCacheMisses.sum());
+        }
+    }
+
+    /**
+     * Counts a lookup in the {@link LibraryTypeCache}.
+     */
+    void countLibraryCache(boolean hit) {
+        if (enabled) {
+            (hit ? libraryCacheHits : libraryCacheMisses).increment();
+        }
+    }
+
+    <T> T time(String phase, Supplier<T> computation) {
+        if (!enabled || excluded) {
+            return computation.get();
+        }
+
+        long start = System.nanoTime();
+        try {
+            return computation.get();
+        } finally {
+            round.phaseNanos.computeIfAbsent(phase, ignore -> new LongAdder()).add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Times the compilation of a single module, may be called concurrently.
+     */
+    List<SourceFile> time(Module module, Supplier<List<SourceFile>> compilation) {
+        if (!enabled || excluded) {
+            return compilation.get();
+        }
+
+        ModuleStats moduleStats = round.modules.computeIfAbsent(module.qualifiedName(), ignore -> new ModuleStats(module));
+        long start = System.nanoTime();
+        List<SourceFile> files = compilation.get();
+        moduleStats.compileNanos.add(System.nanoTime() - start);
+
+        files.forEach(file -> round.modulesByFile.put(file.qualifiedName(), moduleStats));
+
+        return files;
+    }
+
+    /**
+     * @return the given writer, counting the written bytes of the given file if enabled
+     */
+    Writer count(String fileName, Writer writer) {
+        if (!enabled) {
+            return writer;
+        }
+
+        ModuleStats moduleStats = round.modulesByFile.get(fileName);
+
+        return new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                long bytes = utf8Length(buffer, offset, length);
+                round.bytesWritten.add(bytes);
+                if (Objects.nonNull(moduleStats)) {
+                    moduleStats.bytesWritten.add(bytes);
+                }
+                writer.write(buffer, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    void countBytes(long bytes) {
+        if (enabled) {
+            round.bytesWritten.add(bytes);
+        }
+    }
+
+    /**
+     * @return a one line summary of all rounds
+     */
+    String getSummary() {
+        long parse = sumPhases(phase -> phase.startsWith("parse"));
+        long compile = sumPhases(phase -> phase.startsWith("compile"));
+        long write = sumPhases(phase -> phase.startsWith("write"));
+        List<ModuleStats> modules = getModules();
+
+        return String.format(
+                "dagger-auto: %d rounds, %d modules (%d encapsulated), %d single and %d multi bindings,"
+                        + " parse %d ms, compile %d ms, write %d ms, %d bytes written, %d Types and %d Elements calls,"
+                        + " %d library cache hits and %d misses (parse timings include the overhead of counting calls)",
+                rounds.size(),
+                modules.size(),
+                modules.stream().filter(module -> module.encapsulate).count(),
+                modules.stream().mapToLong(module -> module.singleBindings).sum(),
+                modules.stream().mapToLong(module -> module.multiBindings).sum(),
+                parse / 1_000_000,
+                compile / 1_000_000,
+                write / 1_000_000,
+                rounds.stream().mapToLong(round -> round.bytesWritten.sum()).sum(),
+                typesCalls.sum(),
+                elementsCalls.sum(),
+                libraryCacheHits.sum(),
+                libraryCacheMisses.sum());
+    }
+
+    void writeReport(Path path) throws IOException {
+        StringBuilder json = new StringBuilder();
+
+        json.append("{\n  \"parseNanosIncludeCallCounting\": true,\n  \"rounds\": [");
+        for (int i = 0; i < rounds.size(); i++) {
+            Round round = rounds.get(i);
+            List<ModuleStats> modules = sorted(round.modules.values());
+
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("    {\n")
+                    .append("      \"round\": ").append(round.number).append(",\n")
+                    .append("      \"phaseNanos\": {");
+            synchronized (round.phaseNanos) {
+                json.append(
+                        round.phaseNanos.entrySet().stream()
+                                .map(phase -> String.format("%s: %d", quote(phase.getKey()), phase.getValue().sum()))
+                                .collect(Collectors.joining(", ")));
+            }
+            json.append("},\n")
+                    .append("      \"bytesWritten\": ").append(round.bytesWritten.sum()).append(",\n")
+                    .append("      \"typesCalls\": ").append(round.typesCalls).append(",\n")
+                    .append("      \"elementsCalls\": ").append(round.elementsCalls).append(",\n")
+                    .append("      \"libraryCacheHits\": ").append(round.libraryCacheHits).append(",\n")
+                    .append("      \"libraryCacheMisses\": ").append(round.libraryCacheMisses).append(",\n")
+                    .append("      \"singleBindings\": ")
+                    .append(modules.stream().mapToLong(module -> module.singleBindings).sum()).append(",\n")
+                    .append("      \"multiBindings\": ")
+                    .append(modules.stream().mapToLong(module -> module.multiBindings).sum()).append(",\n")
+                    .append("      \"encapsulatedModules\": ")
+                    .append(modules.stream().filter(module -> module.encapsulate).count()).append(",\n")
+                    .append("      \"modules\": [");
+            for (int j = 0; j < modules.size(); j++) {
+                ModuleStats module = modules.get(j);
+
+                json.append(j == 0 ? "\n" : ",\n")
+                        .append("        {")
+                        .append("\"name\": ").append(quote(module.name))
+                        .append(", \"encapsulate\": ").append(module.encapsulate)
+                        .append(", \"singleBindings\": ").append(module.singleBindings)
+                        .append(", \"multiBindings\": ").append(module.multiBindings)
+                        .append(", \"compileNanos\": ").append(module.compileNanos.sum())
+                        .append(", \"bytesWritten\": ").append(module.bytesWritten.sum())
+                        .append("}");
+            }
+            json.append(modules.isEmpty() ? "]\n" : "\n      ]\n").append("    }");
+        }
+        json.append(rounds.isEmpty() ? "]\n" : "\n  ]\n").append("}\n");
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (Objects.nonNull(parent)) {
+            Files.createDirectories(parent);
+        }
+        Files.write(path, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long sumPhases(Predicate<String> filter) {
+        long sum = 0;
+
+        for (Round round : rounds) {
+            synchronized (round.phaseNanos) {
+                sum +=
+                        round.phaseNanos.entrySet().stream()
+                                .filter(phase -> filter.test(phase.getKey()))
+                                .mapToLong(phase -> phase.getValue().sum())
+                                .sum();
+            }
+        }
+
+        return sum;
+    }
+
+    private List<ModuleStats> getModules() {
+        return rounds.stream().flatMap(round -> round.modules.values().stream()).collect(Collectors.toList());
+    }
+
+    private static List<ModuleStats> sorted(Collection<ModuleStats> modules) {
+        List<ModuleStats> sorted = new ArrayList<>(modules);
+        sorted.sort((first, second) -> first.name.compareTo(second.name));
+
+        return sorted;
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static long utf8Length(char[] buffer, int offset, int length) {
+        long bytes = 0;
+
+        for (int i = offset; i < offset + length; i++) {
+            char c = buffer[i];
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isSurrogate(c)) {
+                // a surrogate pair is encoded with 4 bytes
+                bytes += 2;
+            } else {
+                bytes += 3;
+            }
+        }
+
+        return bytes;
+    }
+
+    private static <T> T counting(Class<T> type, T target, LongAdder calls) {
+        return delegate(
+                type,
+                target,
+                (proxy, method, args) -> {
+                    calls.increment();
+                    return invoke(target, method, args);
+                });
+    }
+
+    private static <T> T delegate(Class<T> type, T target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.azahnen.dagger;
+
+import com.github.azahnen.dagger.annotations.AutoBind;
+import com.github.azahnen.dagger.annotations.AutoModule;
+import com.github.azahnen.dagger.annotations.AutoMultiBind;
+
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The elements of a round annotated with {@link AutoModule}, {@link AutoBind} or {@link
+ * AutoMultiBind}, collected in a single pass over the round. Elements are kept in a canonical
+ * order that does not depend on the order in which the compiler reports them.
+ */
+class RoundIndex {
+
+    static final Comparator<Element> CANONICAL_ORDER =
+            Comparator.comparing((Element element) -> element.getKind())
+                    .thenComparing(Element::toString);
+
+    final Set<Element> autoModuleElements;
+    final Set<Element> autoBindElements;
+    final Set<Element> autoMultiBindElements;
+
+    private RoundIndex(
+            Set<Element> autoModuleElements,
+            Set<Element> autoBindElements,
+            Set<Element> autoMultiBindElements) {
+        this.autoModuleElements = Collections.unmodifiableSet(autoModuleElements);
+        this.autoBindElements = Collections.unmodifiableSet(autoBindElements);
+        this.autoMultiBindElements = Collections.unmodifiableSet(autoMultiBindElements);
+    }
+
+    static Set<? extends Element> getAnnotatedElements(
+            RoundEnvironment roundEnvironment,
+            Map<Class<? extends Annotation>, TypeElement> annotationTypes) {
+        return roundEnvironment.getElementsAnnotatedWithAny(
+                annotationTypes.values().toArray(new TypeElement[0]));
+    }
+
+    static RoundIndex of(Collection<? extends Element> elements, AutoAnnotations autoAnnotations) {
+        Set<Element> autoModuleElements = new TreeSet<>(CANONICAL_ORDER);
+        Set<Element> autoBindElements = new TreeSet<>(CANONICAL_ORDER);
+        Set<Element> autoMultiBindElements = new TreeSet<>(CANONICAL_ORDER);
+
+        for (Element element : elements) {
+            if (autoAnnotations.getAutoModule(element).isPresent()) {
+                autoModuleElements.add(element);
+            }
+            if (autoAnnotations.getAutoBind(element).isPresent()) {
+                autoBindElements.add(element);
+            }
+            if (autoAnnotations.getAutoMultiBind(element).isPresent()) {
+                autoMultiBindElements.add(element);
+            }
+        }
+
+        return new RoundIndex(autoModuleElements, autoBindElements, autoMultiBindElements);
+    }
+
+    /**
+     * @return the same elements in reverse canonical order, only used to verify that the generated
+     *     sources do not depend on the order in which the bindings are parsed
+     */
+    RoundIndex reversed() {
+        return new RoundIndex(reverse(autoModuleElements), reverse(autoBindElements), reverse(autoMultiBindElements));
+    }
+
+    private static Set<Element> reverse(Set<Element> elements) {
+        List<Element> reversed = new ArrayList<>(elements);
+        Collections.reverse(reversed);
+
+        return new LinkedHashSet<>(reversed);
+    }
+}
@@ -4,6 +4,7 @@ import com.github.azahnen.dagger.annotations.AutoMultiBind;
 import com.github.azahnen.dagger.annotations.AutoMultiBind.Type;
 import java.util.Map;
 import java.util.Optional;
+import javax.lang.model.element.Element;
 
 class SingleBinding implements Binding {
   final String packageName;
@@ -13,15 +14,24 @@ class SingleBinding implements Binding {
   final String interfaceSimpleName;
   final Optional<AutoMultiBind.Type> multiBind;
   final Optional<String> multiBindKey;
+  /** for class keys, the depth of the key in the type hierarchy, see {@link TypeHierarchy#getDepth} */
+  final int multiBindKeyDepth;
+  /** for lists, the priority of the contribution */
+  final int multiBindPriority;
   final boolean multiBindSameModule;
   final boolean multiBindOtherModule;
+  /** true if the multibinding is a map that is passed on as a map of providers */
+  final boolean multiBindProviders;
   final Map<String, String> injections;
+  final Element implementation;
 
   SingleBinding(String packageName, String implementationFullName,
       String implementationSimpleName,
       String interfaceFullName, String interfaceSimpleName,
-      Optional<Type> multiBind, Optional<String> multiBindKey, boolean multiBindSameModule,
-      boolean multiBindOtherModule, Map<String, String> injections) {
+      Optional<Type> multiBind, Optional<String> multiBindKey, int multiBindKeyDepth,
+      int multiBindPriority, boolean multiBindSameModule,
+      boolean multiBindOtherModule, boolean multiBindProviders, Map<String, String> injections,
+      Element implementation) {
     this.packageName = packageName;
     this.interfaceFullName = interfaceFullName;
     this.interfaceSimpleName = interfaceSimpleName;
@@ -29,9 +39,15 @@ class SingleBinding implements Binding {
     this.implementationSimpleName = implementationSimpleName;
     this.multiBind = multiBind;
     this.multiBindKey = multiBindKey;
+    this.multiBindKeyDepth = multiBindKeyDepth;
+    this.multiBindPriority = multiBindPriority;
     this.multiBindSameModule = multiBindSameModule;
     this.multiBindOtherModule = multiBindOtherModule;
+    this.multiBindProviders =
+        multiBindProviders
+            && multiBind.filter(type -> type == Type.STRING_MAP || type == Type.CLASS_MAP).isPresent();
     this.injections = injections;
+    this.implementation = implementation;
   }
 
   @Override
@@ -39,9 +55,32 @@ class SingleBinding implements Binding {
     return packageName;
   }
 
+  @Override
+  public Element getOriginatingElement() {
+    return implementation;
+  }
+
   @Override
   public String getInterface() {
     return interfaceFullName;
   }
 
+  /**
+   * @return for enum maps, the enum type of the key
+   */
+  Optional<String> getEnumKey() {
+    return multiBind
+        .filter(type -> type == Type.ENUM_MAP)
+        .flatMap(type -> multiBindKey)
+        .map(key -> key.substring(0, key.lastIndexOf('.')));
+  }
+
+  /**
+   * @return the type of the set that Dagger collects the contributions in, see {@link
+   *     DaggerAutoCompiler#toElements}
+   */
+  String getElements() {
+    return DaggerAutoCompiler.toElements(multiBind.orElseThrow(), getEnumKey(), interfaceFullName);
+  }
+
 }
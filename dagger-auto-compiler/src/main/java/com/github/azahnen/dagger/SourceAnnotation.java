@@ -0,0 +1,30 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+import java.util.Objects;
+
+class SourceAnnotation {
+
+  final String type;
+  final String value;
+
+  private SourceAnnotation(String type, String value) {
+    this.type = type;
+    this.value = value;
+  }
+
+  static SourceAnnotation of(String type) {
+    return new SourceAnnotation(type, null);
+  }
+
+  static SourceAnnotation of(String type, String value) {
+    return new SourceAnnotation(type, value);
+  }
+
+  void emit(SourceEmitter emitter) throws IOException {
+    emitter.append('@').append(type);
+    if (Objects.nonNull(value)) {
+      emitter.append('(').append(value).append(')');
+    }
+  }
+}
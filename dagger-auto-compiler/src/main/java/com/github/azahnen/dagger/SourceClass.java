@@ -0,0 +1,35 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A generated top-level final class. Unlike a {@link SourceType}, which models interfaces built from
+ * members, every class emits its own body.
+ */
+abstract class SourceClass implements SourceMember {
+
+  final List<SourceAnnotation> annotations;
+  final String name;
+
+  SourceClass(List<SourceAnnotation> annotations, String name) {
+    this.annotations = annotations;
+    this.name = name;
+  }
+
+  @Override
+  public final void emit(SourceEmitter emitter, String indent) throws IOException {
+    for (SourceAnnotation annotation : annotations) {
+      annotation.emit(emitter);
+      emitter.append('\n');
+    }
+    emitter.append("public final class ").append(name).append(" {\n\n");
+    emitBody(emitter);
+    emitter.append('}');
+  }
+
+  /**
+   * Emits the members of the class, each followed by a blank line.
+   */
+  abstract void emitBody(SourceEmitter emitter) throws IOException;
+}
@@ -0,0 +1,61 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A generated final class that dispatches lookups of a class-keyed multibinding by the runtime class
+ * of an object. It delegates to the runtime {@code ClassLookup} and passes the keys known at compile
+ * time ordered from the most specific, so only keys contributed by other compilations have to be
+ * ordered at runtime.
+ */
+class SourceClassDispatcher extends SourceClass {
+
+  private static final String LOOKUP = "com.github.azahnen.dagger.collections.ClassLookup";
+
+  final String valueType;
+  final List<String> keys;
+
+  /**
+   * @param annotations annotations of the class, e.g. its scope
+   * @param name simple name of the class
+   * @param valueType qualified type of the map values
+   * @param keys qualified names of the keys known at compile time, every key before its supertypes
+   */
+  SourceClassDispatcher(
+      List<SourceAnnotation> annotations, String name, String valueType, List<String> keys) {
+    super(annotations, name);
+    this.valueType = valueType;
+    this.keys = keys;
+  }
+
+  @Override
+  void emitBody(SourceEmitter emitter) throws IOException {
+    emitter
+        .append("\tprivate final ")
+        .append(LOOKUP)
+        .append('<')
+        .append(valueType)
+        .append("> lookup;\n\n\t@jakarta.inject.Inject\n\tpublic ")
+        .append(name)
+        .append("(java.util.Map<Class<?>, ")
+        .append(valueType)
+        .append("> map) {\n\t\tthis.lookup = ")
+        .append(LOOKUP)
+        .append(".of(map");
+    for (String key : keys) {
+      emitter.append(", ").append(key).append(".class");
+    }
+    emitter.append(");\n\t}\n\n");
+
+    emitter
+        .append("\t/**\n\t * @return the value for the given class or its most specific key supertype, null if there is none\n\t */\n\tpublic ")
+        .append(valueType)
+        .append(" get(Class<?> type) {\n\t\treturn lookup.get(type);\n\t}\n\n");
+
+    emitter
+        .append("\t/**\n\t * @return the value for the runtime class of the given instance\n\t */\n\tpublic ")
+        .append(valueType)
+        .append(" getFor(Object instance) {\n\t\treturn lookup.getFor(instance);\n\t}\n\n");
+  }
+}
@@ -0,0 +1,58 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Creates a Dagger component via its builder, passing the given instances and an anonymous
+ * implementation of the external multibindings interface.
+ */
+class SourceComponentBuilder implements SourceExpression {
+
+  final String daggerComponentName;
+  final List<String> instances;
+  final String externalMultiBindingsType;
+  final List<SourceParameter> externalMultiBindings;
+
+  SourceComponentBuilder(
+      String daggerComponentName,
+      List<String> instances,
+      String externalMultiBindingsType,
+      List<SourceParameter> externalMultiBindings) {
+    this.daggerComponentName = daggerComponentName;
+    this.instances = instances;
+    this.externalMultiBindingsType = externalMultiBindingsType;
+    this.externalMultiBindings = externalMultiBindings;
+  }
+
+  @Override
+  public void emit(SourceEmitter emitter) throws IOException {
+    emitter.append(daggerComponentName).append(".builder()\n\t");
+    for (int i = 0; i < instances.size(); i++) {
+      if (i > 0) {
+        emitter.append('\n');
+      }
+      emitter.append("\t.").append(instances.get(i)).append('(').append(instances.get(i)).append(')');
+    }
+    // TODO
+    emitter
+        .append("\n\t\t.externalMultiBindings(new ")
+        .append(externalMultiBindingsType)
+        .append(" () {\n");
+    for (int i = 0; i < externalMultiBindings.size(); i++) {
+      if (i > 0) {
+        emitter.append('\n');
+      }
+      SourceParameter multiBinding = externalMultiBindings.get(i);
+      emitter
+          .append("\t\t\tpublic ")
+          .append(multiBinding.type)
+          .append(' ')
+          .append(multiBinding.name)
+          .append("() {return ")
+          .append(multiBinding.name)
+          .append(";}");
+    }
+    emitter.append("\n\t\t})\n\t.build()");
+  }
+}
@@ -0,0 +1,88 @@
+package com.github.azahnen.dagger;
+
+import com.github.azahnen.dagger.SourceType.Layout;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The provision counters of a generated module. Every counted binding gets an index into an array
+ * of counters, which is held by a nested {@code Counters} interface of the module and registered
+ * with the runtime {@code ProvisionCounters} when the interface is initialized.
+ */
+class SourceCounters {
+
+  private static final String RUNTIME = "com.github.azahnen.dagger.counters.ProvisionCounters";
+  private static final String TYPE_NAME = "Counters";
+  private static final String FIELD_NAME = "COUNTERS";
+
+  final String module;
+  private final List<String> bindings;
+
+  /**
+   * @param module qualified name of the generated module
+   */
+  SourceCounters(String module) {
+    this.module = module;
+    this.bindings = new ArrayList<>();
+  }
+
+  /**
+   * @return the given instance expression, counting every evaluation for the given binding
+   */
+  SourceExpression count(String binding, SourceExpression instance) {
+    int index = bindings.size();
+    bindings.add(binding);
+
+    return emitter -> {
+      emitter
+          .append(RUNTIME)
+          .append(".count(")
+          .append(module)
+          .append('.')
+          .append(TYPE_NAME)
+          .append('.')
+          .append(FIELD_NAME)
+          .append('[')
+          .append(String.valueOf(index))
+          .append("], ");
+      instance.emit(emitter);
+      emitter.append(')');
+    };
+  }
+
+  /**
+   * @return the section with the nested counters interface, empty if no binding is counted
+   */
+  List<SourceMember> compile() {
+    if (bindings.isEmpty()) {
+      return List.of();
+    }
+
+    List<String> arguments = new ArrayList<>();
+    arguments.add(module);
+    arguments.addAll(bindings);
+    String register =
+        String.format(
+            "%s.register(%s)",
+            RUNTIME,
+            arguments.stream()
+                .map(argument -> String.format("\"%s\"", argument))
+                .collect(Collectors.joining(", ")));
+
+    return List.of(
+        new SourceType(
+            List.of(),
+            false,
+            TYPE_NAME,
+            Layout.COMPACT,
+            "",
+            "\t",
+            List.of(
+                List.of(
+                    new SourceField(
+                        "java.util.concurrent.atomic.LongAdder[]",
+                        FIELD_NAME,
+                        SourceExpression.of(register))))));
+  }
+}
@@ -0,0 +1,67 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A generated final class that dispatches lookups of a string-keyed multibinding. The values of the
+ * keys that are known at compile time are copied into an array once, a lookup is a {@code switch}
+ * on the key followed by an array access, so it does not allocate or hash into the map. Keys that
+ * are contributed by other compilations are looked up in the injected map.
+ */
+class SourceDispatcher extends SourceClass {
+
+  final String valueType;
+  final List<String> keys;
+
+  /**
+   * @param annotations annotations of the class, e.g. its scope
+   * @param name simple name of the class
+   * @param valueType qualified type of the map values
+   * @param keys the keys known at compile time, without duplicates
+   */
+  SourceDispatcher(
+      List<SourceAnnotation> annotations, String name, String valueType, List<String> keys) {
+    super(annotations, name);
+    this.valueType = valueType;
+    this.keys = keys;
+  }
+
+  @Override
+  void emitBody(SourceEmitter emitter) throws IOException {
+    String mapType = String.format("java.util.Map<String, %s>", valueType);
+
+    emitter
+        .append("\tprivate final Object[] values;\n\tprivate final ")
+        .append(mapType)
+        .append(" map;\n\n\t@jakarta.inject.Inject\n\tpublic ")
+        .append(name)
+        .append('(')
+        .append(mapType)
+        .append(" map) {\n\t\tthis.values = new Object[] {");
+    for (int i = 0; i < keys.size(); i++) {
+      if (i > 0) {
+        emitter.append(", ");
+      }
+      emitter.append("map.get(").append(SourceExpression.literal(keys.get(i))).append(')');
+    }
+    emitter.append("};\n\t\tthis.map = map;\n\t}\n\n");
+
+    emitter
+        .append("\t/**\n\t * @param key must not be null\n\t * @return the value for the given key, null if there is none\n\t */\n")
+        .append("\t@SuppressWarnings(\"unchecked\")\n\tpublic ")
+        .append(valueType)
+        .append(" get(String key) {\n\t\tswitch (key) {\n");
+    for (int i = 0; i < keys.size(); i++) {
+      emitter
+          .append("\t\t\tcase ")
+          .append(SourceExpression.literal(keys.get(i)))
+          .append(":\n\t\t\t\treturn (")
+          .append(valueType)
+          .append(") values[")
+          .append(String.valueOf(i))
+          .append("];\n");
+    }
+    emitter.append("\t\t\tdefault:\n\t\t\t\treturn map.get(key);\n\t\t}\n\t}\n\n");
+  }
+}
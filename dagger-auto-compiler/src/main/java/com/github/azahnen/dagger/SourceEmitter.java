@@ -0,0 +1,62 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes {@link SourceFile}s to a {@link Writer} through a reused buffer, so that no complete
+ * file content is ever materialized as a string.
+ */
+class SourceEmitter {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final char[] buffer;
+  private int length;
+  private Writer writer;
+
+  SourceEmitter() {
+    this.buffer = new char[BUFFER_SIZE];
+    this.length = 0;
+  }
+
+  void emit(SourceFile file, Writer writer) throws IOException {
+    this.writer = writer;
+    try {
+      append("package ").append(file.packageName).append(";\n\n");
+      file.type.emit(this, "");
+      flush();
+    } finally {
+      this.length = 0;
+      this.writer = null;
+    }
+  }
+
+  SourceEmitter append(String string) throws IOException {
+    int offset = 0;
+
+    while (offset < string.length()) {
+      if (length == buffer.length) {
+        flush();
+      }
+      int count = Math.min(string.length() - offset, buffer.length - length);
+      string.getChars(offset, offset + count, buffer, length);
+      length += count;
+      offset += count;
+    }
+    return this;
+  }
+
+  SourceEmitter append(char c) throws IOException {
+    if (length == buffer.length) {
+      flush();
+    }
+    buffer[length++] = c;
+    return this;
+  }
+
+  private void flush() throws IOException {
+    writer.write(buffer, 0, length);
+    length = 0;
+  }
+}
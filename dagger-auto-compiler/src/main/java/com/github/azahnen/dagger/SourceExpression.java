@@ -0,0 +1,74 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The expression returned by a generated method.
+ */
+interface SourceExpression {
+
+  void emit(SourceEmitter emitter) throws IOException;
+
+  static SourceExpression of(String code) {
+    return emitter -> emitter.append(code);
+  }
+
+  /**
+   * @return the given value as Java string literal. Quotes, backslashes and control characters are
+   *     escaped, other characters outside of ASCII as unicode escapes, so the literal does not
+   *     depend on the encoding of the generated file. Control characters are escaped as octal,
+   *     since unicode escapes are translated before the literal is parsed.
+   */
+  static String literal(String value) {
+    StringBuilder literal = new StringBuilder(value.length() + 2).append('"');
+
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+
+      switch (c) {
+        case '"':
+          literal.append("\\\"");
+          break;
+        case '\\':
+          literal.append("\\\\");
+          break;
+        case '\n':
+          literal.append("\\n");
+          break;
+        case '\r':
+          literal.append("\\r");
+          break;
+        case '\t':
+          literal.append("\\t");
+          break;
+        default:
+          if (c < 0x20 || c == 0x7f) {
+            literal.append(String.format("\\%03o", (int) c));
+          } else if (c > 0x7f) {
+            literal.append(String.format("\\u%04x", (int) c));
+          } else {
+            literal.append(c);
+          }
+      }
+    }
+
+    return literal.append('"').toString();
+  }
+
+  /**
+   * @return a call of the given static method with the given string literals and a supplier of the
+   *     given expression as arguments
+   */
+  static SourceExpression supplied(String method, List<String> literals, SourceExpression expression) {
+    return emitter -> {
+      emitter.append(method).append('(');
+      for (String literal : literals) {
+        emitter.append('"').append(literal).append("\", ");
+      }
+      emitter.append("() -> ");
+      expression.emit(emitter);
+      emitter.append(')');
+    };
+  }
+}
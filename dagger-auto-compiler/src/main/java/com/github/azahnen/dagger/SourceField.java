@@ -0,0 +1,26 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+
+/**
+ * A constant of a generated interface.
+ */
+class SourceField implements SourceMember {
+
+  final String type;
+  final String name;
+  final SourceExpression value;
+
+  SourceField(String type, String name, SourceExpression value) {
+    this.type = type;
+    this.name = name;
+    this.value = value;
+  }
+
+  @Override
+  public void emit(SourceEmitter emitter, String indent) throws IOException {
+    emitter.append(type).append(' ').append(name).append(" = ");
+    value.emit(emitter);
+    emitter.append(';');
+  }
+}
@@ -0,0 +1,34 @@
+package com.github.azahnen.dagger;
+
+import java.util.List;
+import javax.lang.model.element.Element;
+
+class SourceFile {
+
+  final String packageName;
+  final String name;
+  /** the top-level interface or class */
+  final SourceMember type;
+  /** the annotated elements this file was generated from */
+  final List<Element> originatingElements;
+
+  SourceFile(String packageName, SourceType type, List<Element> originatingElements) {
+    this(packageName, type.name, type, originatingElements);
+  }
+
+  SourceFile(String packageName, SourceClass type, List<Element> originatingElements) {
+    this(packageName, type.name, type, originatingElements);
+  }
+
+  private SourceFile(
+      String packageName, String name, SourceMember type, List<Element> originatingElements) {
+    this.packageName = packageName;
+    this.name = name;
+    this.type = type;
+    this.originatingElements = originatingElements;
+  }
+
+  String qualifiedName() {
+    return String.format("%s.%s", packageName, name);
+  }
+}
@@ -0,0 +1,11 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+
+/**
+ * A member of a generated type, e.g. a method or a nested interface.
+ */
+interface SourceMember {
+
+  void emit(SourceEmitter emitter, String indent) throws IOException;
+}
@@ -0,0 +1,75 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+
+class SourceMethod implements SourceMember {
+
+  final List<SourceAnnotation> annotations;
+  final boolean isStatic;
+  final String returnType;
+  final String name;
+  final List<SourceParameter> parameters;
+  final SourceExpression returnExpression;
+
+  private SourceMethod(
+      List<SourceAnnotation> annotations,
+      boolean isStatic,
+      String returnType,
+      String name,
+      List<SourceParameter> parameters,
+      SourceExpression returnExpression) {
+    this.annotations = annotations;
+    this.isStatic = isStatic;
+    this.returnType = returnType;
+    this.name = name;
+    this.parameters = parameters;
+    this.returnExpression = returnExpression;
+  }
+
+  static SourceMethod abstractMethod(
+      List<SourceAnnotation> annotations,
+      String returnType,
+      String name,
+      List<SourceParameter> parameters) {
+    return new SourceMethod(annotations, false, returnType, name, parameters, null);
+  }
+
+  static SourceMethod staticMethod(
+      List<SourceAnnotation> annotations,
+      String returnType,
+      String name,
+      List<SourceParameter> parameters,
+      SourceExpression returnExpression) {
+    return new SourceMethod(annotations, true, returnType, name, parameters, returnExpression);
+  }
+
+  @Override
+  public void emit(SourceEmitter emitter, String indent) throws IOException {
+    for (SourceAnnotation annotation : annotations) {
+      annotation.emit(emitter);
+      emitter.append('\n').append(indent);
+    }
+    if (isStatic) {
+      emitter.append("static ");
+    }
+    emitter.append(returnType).append(' ').append(name).append('(');
+    for (int i = 0; i < parameters.size(); i++) {
+      if (i > 0) {
+        emitter.append(", ");
+      }
+      parameters.get(i).emit(emitter);
+    }
+    emitter.append(')');
+
+    if (Objects.isNull(returnExpression)) {
+      emitter.append(';');
+      return;
+    }
+
+    emitter.append(" {\n").append(indent).append("\treturn ");
+    returnExpression.emit(emitter);
+    emitter.append(";\n").append(indent).append('}');
+  }
+}
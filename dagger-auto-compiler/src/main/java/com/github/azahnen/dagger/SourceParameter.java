@@ -0,0 +1,36 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+import java.util.Objects;
+
+class SourceParameter {
+
+  final String type;
+  final String name;
+
+  SourceParameter(String type, String name) {
+    this.type = type;
+    this.name = name;
+  }
+
+  void emit(SourceEmitter emitter) throws IOException {
+    emitter.append(type).append(' ').append(name);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof SourceParameter)) {
+      return false;
+    }
+    SourceParameter that = (SourceParameter) o;
+    return Objects.equals(type, that.type) && Objects.equals(name, that.name);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, name);
+  }
+}
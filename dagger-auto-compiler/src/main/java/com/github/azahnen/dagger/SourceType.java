@@ -0,0 +1,105 @@
+package com.github.azahnen.dagger;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A generated interface, either top-level or nested. Sections are groups of members, see {@link
+ * Layout} for how they are separated.
+ */
+class SourceType implements SourceMember {
+
+  enum Layout {
+    /** Members and sections are separated by blank lines. */
+    BLOCK,
+    /** Sections are separated by blank lines, members of a section by line breaks. */
+    GROUPED,
+    /** Every member on its own line, no blank lines. */
+    COMPACT
+  }
+
+  final List<SourceAnnotation> annotations;
+  final boolean isPublic;
+  final String name;
+  final Layout layout;
+  final String indent;
+  final String memberIndent;
+  final List<List<SourceMember>> sections;
+
+  SourceType(
+      List<SourceAnnotation> annotations,
+      boolean isPublic,
+      String name,
+      Layout layout,
+      String indent,
+      String memberIndent,
+      List<List<SourceMember>> sections) {
+    this.annotations = annotations;
+    this.isPublic = isPublic;
+    this.name = name;
+    this.layout = layout;
+    this.indent = indent;
+    this.memberIndent = memberIndent;
+    this.sections = sections;
+  }
+
+  static SourceType topLevel(
+      List<SourceAnnotation> annotations, String name, List<List<SourceMember>> sections) {
+    return new SourceType(annotations, true, name, Layout.BLOCK, "", "", sections);
+  }
+
+  @Override
+  public void emit(SourceEmitter emitter, String parentIndent) throws IOException {
+    for (SourceAnnotation annotation : annotations) {
+      emitter.append(indent);
+      annotation.emit(emitter);
+      emitter.append('\n');
+    }
+    emitter.append(indent);
+    if (isPublic) {
+      emitter.append("public ");
+    }
+    emitter.append("interface ").append(name).append(" {\n");
+
+    if (layout == Layout.COMPACT) {
+      emitCompact(emitter);
+    } else {
+      emitBlock(emitter);
+    }
+  }
+
+  private void emitBlock(SourceEmitter emitter) throws IOException {
+    String memberSeparator = layout == Layout.BLOCK ? "\n\n" : "\n";
+
+    emitter.append('\n').append(memberIndent);
+    for (int i = 0; i < sections.size(); i++) {
+      if (i > 0) {
+        emitter.append("\n\n").append(memberIndent);
+      }
+      List<SourceMember> members = sections.get(i);
+      for (int j = 0; j < members.size(); j++) {
+        if (j > 0) {
+          emitter.append(memberSeparator).append(memberIndent);
+        }
+        members.get(j).emit(emitter, memberIndent);
+      }
+    }
+    emitter.append("\n\n").append(indent).append('}');
+  }
+
+  private void emitCompact(SourceEmitter emitter) throws IOException {
+    boolean first = true;
+
+    for (List<SourceMember> members : sections) {
+      for (SourceMember member : members) {
+        if (!first) {
+          emitter.append('\n');
+        }
+        emitter.append(memberIndent);
+        member.emit(emitter, memberIndent);
+        first = false;
+      }
+    }
+    emitter.append('\n').append(indent).append('}');
+  }
+}
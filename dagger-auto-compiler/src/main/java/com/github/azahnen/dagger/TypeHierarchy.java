@@ -0,0 +1,197 @@
+package com.github.azahnen.dagger;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Round-scoped index of interface hierarchies. The interface closure of every visited type and the
+ * wildcard name of every visited element are computed once and shared by all bindings of a round.
+ * For types from jars, both are also kept in the {@link LibraryTypeCache} across compilations.
+ */
+class TypeHierarchy {
+
+    private final Types types;
+    private final Elements elements;
+    private final LibraryTypeCache libraryTypes;
+    private final Map<String, List<TypeMirror>> interfaces;
+    private final Map<Element, String> wildcardNames;
+    private final Map<String, Boolean> errorTypes;
+    private final Map<String, Integer> depths;
+
+    TypeHierarchy(Types types, Elements elements, LibraryTypeCache libraryTypes) {
+        this.types = types;
+        this.elements = elements;
+        this.libraryTypes = libraryTypes;
+        this.interfaces = new HashMap<>();
+        this.wildcardNames = new HashMap<>();
+        this.errorTypes = new HashMap<>();
+        this.depths = new HashMap<>();
+    }
+
+    /**
+     * @return all interfaces implemented or extended by the given type, deduplicated and in
+     * depth-first order of the declarations
+     */
+    List<TypeMirror> getInterfaces(TypeMirror type) {
+        String key = type.toString();
+        List<TypeMirror> cached = interfaces.get(key);
+
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+
+        // TypeMirror.equals does not work, so we have to use a map to get distinct values,
+        // a type can only inherit a single parameterization of an interface, so erasures suffice
+        Map<String, TypeMirror> closure = new LinkedHashMap<>();
+
+        for (TypeMirror superType : types.directSupertypes(type)) {
+            if (isInterface(superType)) {
+                closure.putIfAbsent(types.erasure(superType).toString(), superType);
+            }
+            for (TypeMirror superSuperType : getSuperInterfaces(superType)) {
+                closure.putIfAbsent(types.erasure(superSuperType).toString(), superSuperType);
+            }
+        }
+
+        List<TypeMirror> result = Collections.unmodifiableList(new ArrayList<>(closure.values()));
+        interfaces.put(key, result);
+
+        return result;
+    }
+
+    /**
+     * For types from jars, the closure is taken from the {@link LibraryTypeCache} by name, so the
+     * type arguments of the returned types are the declared type variables.
+     */
+    private List<TypeMirror> getSuperInterfaces(TypeMirror superType) {
+        Element element = types.asElement(superType);
+
+        if (!libraryTypes.isLibraryType(element)) {
+            return getInterfaces(superType);
+        }
+
+        List<String> names =
+                libraryTypes.get(
+                        "interfaces",
+                        element,
+                        () ->
+                                getInterfaces(superType).stream()
+                                        .map(type -> ((TypeElement) types.asElement(type)).getQualifiedName().toString())
+                                        .collect(Collectors.toUnmodifiableList()));
+
+        return names.stream()
+                .map(elements::getTypeElement)
+                .filter(Objects::nonNull)
+                .map(Element::asType)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return true if the given type or any of its supertypes cannot be resolved (yet), e.g. because
+     * it is generated by another processor in a later round
+     */
+    boolean hasErrorTypes(TypeMirror type) {
+        if (type.getKind() == TypeKind.ERROR) {
+            return true;
+        }
+
+        String key = type.toString();
+        Boolean cached = errorTypes.get(key);
+
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+
+        // directSupertypes silently drops unresolved types, so the declarations have to be used
+        Element element = types.asElement(type);
+        boolean result =
+                element instanceof TypeElement
+                        && (hasErrorTypes(((TypeElement) element).getSuperclass())
+                        || ((TypeElement) element).getInterfaces().stream().anyMatch(this::hasErrorTypes));
+        errorTypes.put(key, result);
+
+        return result;
+    }
+
+    /**
+     * @return the length of the longest path from the given type to {@code java.lang.Object}, so a
+     * type is always deeper than its supertypes, 0 if the type is unknown
+     */
+    int getDepth(String qualifiedName) {
+        TypeElement element = elements.getTypeElement(qualifiedName);
+
+        return Objects.isNull(element) ? 0 : getDepth(element.asType());
+    }
+
+    private int getDepth(TypeMirror type) {
+        String key = types.erasure(type).toString();
+        Integer cached = depths.get(key);
+
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+
+        int depth = 0;
+        for (TypeMirror superType : types.directSupertypes(type)) {
+            depth = Math.max(depth, getDepth(superType) + 1);
+        }
+        depths.put(key, depth);
+
+        return depth;
+    }
+
+    String getWildcardName(TypeMirror type) {
+        return getWildcardName(types.asElement(type));
+    }
+
+    String getWildcardName(Element element) {
+        String cached = wildcardNames.get(element);
+
+        if (Objects.nonNull(cached)) {
+            return cached;
+        }
+
+        String name = libraryTypes.get("wildcardName", element, () -> computeWildcardName(element));
+        wildcardNames.put(element, name);
+
+        return name;
+    }
+
+    private boolean isInterface(TypeMirror type) {
+        Element element = types.asElement(type);
+
+        return Objects.nonNull(element)
+                && element.getKind().isInterface() // TODO does it work?
+                && !Objects.equals(type.toString(), "java.lang.Object");
+    }
+
+    private static String computeWildcardName(Element element) {
+        if (element.asType() instanceof DeclaredType) {
+            List<? extends TypeMirror> typeArguments =
+                    ((DeclaredType) element.asType()).getTypeArguments();
+            String typeString =
+                    typeArguments.isEmpty()
+                            ? ""
+                            : typeArguments.stream()
+                            .map(TypeMirror::toString)
+                            .map(type -> type.length() == 1 ? "?" : type)
+                            .collect(Collectors.joining(", ", "<", ">"));
+
+            return element.toString() + typeString;
+        }
+        return element.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.azahnen.dagger;
+
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the option {@code dagger.auto.accumulate}, which writes every generated source once after
+ * the bindings of all rounds are known.
+ */
+class AccumulateTest {
+
+    private static final JavaFileObject GENERATED_IMPL =
+            TestCompilation.source("c.GeneratedImpl",
+                    "package c; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                            + "@AutoBind public class GeneratedImpl implements Generated { @Inject GeneratedImpl() {} }");
+
+    /**
+     * Generates the interface {@code c.Generated} in the first round, like another processor that
+     * generates the supertypes of annotated classes.
+     */
+    @SupportedAnnotationTypes("*")
+    private static class GeneratingProcessor extends AbstractProcessor {
+
+        private boolean generated;
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latest();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+            if (!generated) {
+                this.generated = true;
+                try (Writer writer = processingEnv.getFiler().createSourceFile("c.Generated").openWriter()) {
+                    writer.write("package c; public interface Generated {}");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return false;
+        }
+    }
+
+    private static List<JavaFileObject> withPackage(String packageInfo, JavaFileObject... sources) {
+        List<JavaFileObject> all = new ArrayList<>(ReproducibilityTest.sources());
+        all.add(TestCompilation.source("c.package-info",
+                packageInfo + "\npackage c; import com.github.azahnen.dagger.annotations.AutoModule;"));
+        all.addAll(List.of(sources));
+
+        return all;
+    }
+
+    @Test
+    void deferredElementsAreWrittenBeforeTheFinalRound() {
+        TestCompilation compilation = TestCompilation.compile(
+                withPackage("@AutoModule(encapsulate = true)", GENERATED_IMPL),
+                List.of(new GeneratingProcessor()),
+                "dagger.auto.accumulate=true");
+
+        assertEquals(List.of(), compilation.errors);
+        assertTrue(compilation.sources.get("c.AutoBindingsEncapsulated").contains("c.GeneratedImpl"));
+        assertTrue(compilation.warnings.stream().noneMatch(warning -> warning.contains("last round")),
+                String.join("\n", compilation.warnings));
+    }
+
+    @Test
+    void encapsulatedModulesInTheFinalRoundAreReported() {
+        TestCompilation compilation = TestCompilation.compile(ReproducibilityTest.sources(), "dagger.auto.accumulate=true");
+
+        assertEquals(
+                List.of("Encapsulated module b.AutoBindings cannot be generated in the final round with dagger.auto.accumulate, use the default mode"),
+                compilation.errors);
+        assertTrue(compilation.sources.containsKey("a.AutoBindings"));
+        assertFalse(compilation.sources.containsKey("b.AutoBindings"));
+    }
+
+    @Test
+    void unresolvedSupertypesAreReportedByTheCompiler() {
+        TestCompilation compilation = TestCompilation.compile(
+                withPackage("@AutoModule", GENERATED_IMPL), "dagger.auto.accumulate=true");
+
+        assertTrue(compilation.errors.stream().anyMatch(error -> error.startsWith("cannot find symbol")),
+                String.join("\n", compilation.errors));
+    }
+}
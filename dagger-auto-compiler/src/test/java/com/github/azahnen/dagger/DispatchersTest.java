@@ -0,0 +1,135 @@
+package com.github.azahnen.dagger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the dispatchers generated for string-keyed multibindings with the option {@code
+ * dagger.auto.dispatchers}.
+ */
+class DispatchersTest {
+
+    /**
+     * Keys as written in the annotations of the test sources and their values.
+     */
+    private static final Map<String, String> KEYS = new LinkedHashMap<>();
+
+    static {
+        KEYS.put("\\\"quoted\\\"", "\"quoted\"");
+        KEYS.put("back\\\\slash", "back\\slash");
+        KEYS.put("new\\nline", "new\nline");
+        KEYS.put("tab\\tbell\\u0007", "tab\tbell\u0007");
+        KEYS.put("gr\\u00fc\\u00dfe", "gr\u00fc\u00dfe");
+    }
+
+    private static List<JavaFileObject> sources(Iterable<String> keys) {
+        List<JavaFileObject> sources = new ArrayList<>();
+        int i = 0;
+
+        sources.add(TestCompilation.source("a.Handler",
+                "package a; import com.github.azahnen.dagger.annotations.AutoMultiBind;\n"
+                        + "@AutoMultiBind(AutoMultiBind.Type.STRING_MAP) public interface Handler {}"));
+        for (String key : keys) {
+            String name = "Handler" + i++;
+            sources.add(TestCompilation.source("a." + name,
+                    "package a; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                            + "@AutoBind(mapKeyString = \"" + key + "\") public class " + name
+                            + " implements Handler { @Inject " + name + "() {} }"));
+        }
+
+        return sources;
+    }
+
+    @Test
+    void keysAreEscaped(@TempDir Path directory) throws IOException, ReflectiveOperationException {
+        TestCompilation compilation = TestCompilation.compile(sources(KEYS.keySet()), "dagger.auto.dispatchers=true");
+
+        assertEquals(List.of(), compilation.errors);
+
+        Files.createDirectories(directory.resolve("a"));
+        Files.writeString(directory.resolve("a/Handler.java"), "package a; public interface Handler {}");
+        Files.writeString(directory.resolve("a/HandlerDispatcher.java"), compilation.sources.get("a.HandlerDispatcher"));
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        int result = javac.run(null, null, null,
+                "-proc:none", "-classpath", System.getProperty("java.class.path"), "-d", directory.toString(),
+                directory.resolve("a/Handler.java").toString(), directory.resolve("a/HandlerDispatcher.java").toString());
+
+        assertEquals(0, result);
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {directory.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> handler = classLoader.loadClass("a.Handler");
+            Class<?> dispatcherClass = classLoader.loadClass("a.HandlerDispatcher");
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (String key : KEYS.values()) {
+                map.put(key, Proxy.newProxyInstance(classLoader, new Class<?>[] {handler}, (proxy, method, args) -> key));
+            }
+            Object dispatcher = dispatcherClass.getConstructor(Map.class).newInstance(map);
+            Method get = dispatcherClass.getMethod("get", String.class);
+
+            for (String key : KEYS.values()) {
+                assertSame(map.get(key), get.invoke(dispatcher, key), key);
+            }
+        }
+    }
+
+    @Test
+    void dispatcherIsSingleton() {
+        TestCompilation compilation = TestCompilation.compile(sources(List.of("a", "b")), "dagger.auto.dispatchers=true");
+        String dispatcher = compilation.sources.get("a.HandlerDispatcher");
+
+        assertEquals(List.of(), compilation.errors);
+        assertTrue(dispatcher.contains("@jakarta.inject.Singleton\npublic final class HandlerDispatcher {"), dispatcher);
+    }
+
+    @Test
+    void classDispatcherIsSingleton() {
+        TestCompilation compilation = TestCompilation.compile(List.of(
+                TestCompilation.source("a.Mapper",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoMultiBind;\n"
+                                + "@AutoMultiBind(AutoMultiBind.Type.CLASS_MAP) public interface Mapper {}"),
+                TestCompilation.source("a.TextMapper",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                                + "@AutoBind(mapKeyClass = CharSequence.class) public class TextMapper implements Mapper { @Inject TextMapper() {} }")),
+                "dagger.auto.dispatchers=true");
+        String dispatcher = compilation.sources.get("a.MapperDispatcher");
+
+        assertEquals(List.of(), compilation.errors);
+        assertTrue(dispatcher.contains("@jakarta.inject.Singleton\npublic final class MapperDispatcher {"), dispatcher);
+    }
+
+    @Test
+    void duplicateKeysAreReported() {
+        TestCompilation compilation = TestCompilation.compile(sources(List.of("a", "b", "a")));
+
+        assertEquals(List.of("Duplicate map key a for a.Handler, already contributed by a.Handler0"), compilation.errors);
+        assertFalse(compilation.sources.isEmpty());
+    }
+
+    @Test
+    void duplicateKeysAreReportedWithDispatchers() {
+        TestCompilation compilation = TestCompilation.compile(sources(List.of("a", "b", "a")), "dagger.auto.dispatchers=true");
+
+        assertEquals(List.of("Duplicate map key a for a.Handler, already contributed by a.Handler0"), compilation.errors);
+    }
+}
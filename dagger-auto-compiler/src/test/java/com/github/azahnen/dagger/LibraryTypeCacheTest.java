@@ -0,0 +1,90 @@
+package com.github.azahnen.dagger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that types from jars are cached across compilations, which share the cache in the same
+ * JVM, by the jar they are loaded from.
+ */
+class LibraryTypeCacheTest {
+
+    private static final List<JavaFileObject> SOURCES = List.of(
+            TestCompilation.source("x.AImpl",
+                    "package x; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                            + "@AutoBind public class AImpl implements lib.A { @Inject AImpl() {} }"),
+            TestCompilation.source("x.BImpl",
+                    "package x; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                            + "@AutoBind public class BImpl implements lib.B { @Inject BImpl() {} }"));
+
+    /**
+     * The package {@code lib} is split across two jars, only the jar of {@code lib.B} changes
+     * between the compilations.
+     */
+    @Test
+    void typesOfSplitPackagesAreKeyedByTheirJar(@TempDir Path directory) throws IOException {
+        Path a = jar(directory.resolve("a"), "lib.A", "package lib; public interface A {}");
+        Path setB = jar(directory.resolve("b1"), "lib.B",
+                "package lib; import com.github.azahnen.dagger.annotations.AutoMultiBind;\n"
+                        + "@AutoMultiBind(AutoMultiBind.Type.SET) public interface B {}");
+        Path plainB = jar(directory.resolve("b2"), "lib.B", "package lib; public interface B {}");
+
+        TestCompilation first = TestCompilation.compile(SOURCES, List.of(), List.of(a, setB));
+        TestCompilation second = TestCompilation.compile(SOURCES, List.of(), List.of(a, plainB));
+
+        assertEquals(List.of(), first.errors);
+        assertEquals(List.of(), second.errors);
+        assertTrue(first.sources.get("x.AutoBindings").contains("lib.B"), first.sources.get("x.AutoBindings"));
+        assertTrue(second.sources.get("x.AutoBindings").contains("lib.B"), second.sources.get("x.AutoBindings"));
+        assertTrue(first.sources.get("x.AutoBindings").contains("@dagger.multibindings.IntoSet"), first.sources.get("x.AutoBindings"));
+        assertFalse(second.sources.get("x.AutoBindings").contains("@dagger.multibindings.IntoSet"), second.sources.get("x.AutoBindings"));
+    }
+
+    /**
+     * @return a jar with the compiled class of the given source
+     */
+    private static Path jar(Path directory, String className, String source) throws IOException {
+        Path classes = Files.createDirectories(directory.resolve("classes"));
+        Path sourceFile = classes.resolve(className.replace('.', '/') + ".java");
+        Files.createDirectories(sourceFile.getParent());
+        Files.writeString(sourceFile, source);
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        int result = javac.run(null, null, null,
+                "-proc:none", "-classpath", System.getProperty("java.class.path"), "-d", classes.toString(), sourceFile.toString());
+
+        assertEquals(0, result);
+
+        Path jar = directory.resolve("lib.jar");
+        List<Path> classFiles;
+        try (Stream<Path> files = Files.walk(classes)) {
+            classFiles = files.filter(file -> file.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+        }
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (Path classFile : classFiles) {
+                out.putNextEntry(new JarEntry(classes.relativize(classFile).toString().replace('\\', '/')));
+                Files.copy(classFile, (OutputStream) out);
+                out.closeEntry();
+            }
+        }
+
+        return jar;
+    }
+}
@@ -0,0 +1,108 @@
+package com.github.azahnen.dagger;
+
+import org.junit.jupiter.api.Test;
+
+import javax.tools.JavaFileObject;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the generated bindings of the multibinding types that are wrapped around a set of
+ * contributions.
+ */
+class MultiBindingTypesTest {
+
+    private static JavaFileObject contribution(String name, String annotation, String interfaceName) {
+        return TestCompilation.source("a." + name,
+                "package a; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                        + annotation + " public class " + name + " implements " + interfaceName + " { @Inject " + name + "() {} }");
+    }
+
+    private static void assertContains(String source, String expected) {
+        assertTrue(source.contains(expected), "expected\n" + expected + "\nin\n" + source);
+    }
+
+    @Test
+    void lazySetIsSingleton() {
+        TestCompilation compilation = TestCompilation.compile(List.of(
+                TestCompilation.source("a.Step",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoMultiBind;\n"
+                                + "@AutoMultiBind(AutoMultiBind.Type.LAZY_SET) public interface Step {}"),
+                contribution("StepA", "@AutoBind", "Step"),
+                contribution("StepB", "@AutoBind", "Step")));
+
+        assertEquals(List.of(), compilation.errors);
+        assertContains(
+                compilation.sources.get("a.AutoBindings"),
+                "@jakarta.inject.Singleton\n@dagger.Provides\nstatic com.github.azahnen.dagger.collections.LazySet<a.Step> stepLazySet(");
+    }
+
+    @Test
+    void enumMapIsSingletonAndBoundForEncapsulatedConsumers() {
+        TestCompilation compilation = TestCompilation.compile(List.of(
+                TestCompilation.source("a.package-info",
+                        "@AutoModule(encapsulate = true) package a; import com.github.azahnen.dagger.annotations.AutoModule;"),
+                TestCompilation.source("a.Shape",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoMultiBind;\n"
+                                + "@AutoMultiBind(value = AutoMultiBind.Type.ENUM_MAP, enumKey = java.util.concurrent.TimeUnit.class) public interface Shape {}"),
+                contribution("Square", "@AutoBind(mapKeyEnum = \"SECONDS\")", "Shape"),
+                TestCompilation.source("a.Hub", "package a; public interface Hub {}"),
+                TestCompilation.source("a.HubImpl",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject; import java.util.Map; import java.util.concurrent.TimeUnit;\n"
+                                + "@AutoBind public class HubImpl implements Hub { @Inject HubImpl(Map<TimeUnit, Shape> shapes) {} }")));
+
+        assertEquals(List.of(), compilation.errors);
+        assertContains(
+                compilation.sources.get("a.AutoBindingsEncapsulated"),
+                "@jakarta.inject.Singleton\n@dagger.Provides\nstatic java.util.Map<java.util.concurrent.TimeUnit, a.Shape> shapeEnumMap(");
+        assertFalse(
+                compilation.sources.get("a.AutoBindingsEncapsulatedComponent").contains("java.util.Map<"),
+                compilation.sources.get("a.AutoBindingsEncapsulatedComponent"));
+    }
+
+    @Test
+    void listIsSortedAtCompileTime() {
+        TestCompilation compilation = TestCompilation.compile(List.of(
+                TestCompilation.source("a.Filter",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoMultiBind;\n"
+                                + "@AutoMultiBind(AutoMultiBind.Type.LIST) public interface Filter {}"),
+                contribution("Zip", "@AutoBind", "Filter"),
+                contribution("Auth", "@AutoBind(priority = 10)", "Filter"),
+                contribution("Log", "@AutoBind(priority = -5)", "Filter"),
+                contribution("Cache", "@AutoBind", "Filter")));
+
+        assertEquals(List.of(), compilation.errors);
+        assertContains(
+                compilation.sources.get("a.AutoBindings"),
+                "static com.github.azahnen.dagger.collections.PriorityList.Run<a.Filter> a_FilterListRun(a.Log log, a.Cache cache, a.Zip zip, a.Auth auth) {\n"
+                        + "\treturn com.github.azahnen.dagger.collections.PriorityList.run("
+                        + "new int[] {-5, 0, 0, 10}, new String[] {\"a.Log\", \"a.Cache\", \"a.Zip\", \"a.Auth\"}, log, cache, zip, auth);");
+        assertContains(
+                compilation.sources.get("a.AutoBindings"),
+                "@jakarta.inject.Singleton\n@dagger.Provides\nstatic java.util.List<a.Filter> filterList(");
+    }
+
+    @Test
+    void listRunsAreNamedByQualifiedInterface() {
+        TestCompilation compilation = TestCompilation.compile(List.of(
+                TestCompilation.source("a.Filter",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoMultiBind;\n"
+                                + "@AutoMultiBind(AutoMultiBind.Type.LIST) public interface Filter {}"),
+                TestCompilation.source("b.Filter",
+                        "package b; import com.github.azahnen.dagger.annotations.AutoMultiBind;\n"
+                                + "@AutoMultiBind(AutoMultiBind.Type.LIST) public interface Filter {}"),
+                contribution("Zip", "@AutoBind", "Filter"),
+                contribution("Gzip", "@AutoBind", "b.Filter")));
+
+        assertEquals(List.of(), compilation.errors);
+        assertContains(
+                compilation.sources.get("a.AutoBindings"),
+                "static com.github.azahnen.dagger.collections.PriorityList.Run<a.Filter> a_FilterListRun(a.Zip zip) {");
+        assertContains(
+                compilation.sources.get("a.AutoBindings"),
+                "static com.github.azahnen.dagger.collections.PriorityList.Run<b.Filter> b_FilterListRun(a.Gzip gzip) {");
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.azahnen.dagger;
+
+import org.junit.jupiter.api.Test;
+
+import javax.tools.JavaFileObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the originating elements that Gradle uses to map generated sources to the annotated
+ * sources they depend on, see {@code META-INF/gradle/incremental.annotation.processors}. A change
+ * to an annotated source in one package must only change the generated sources of that package.
+ */
+class OriginatingElementsTest {
+
+    private static final JavaFileObject PLUGIN_B =
+            TestCompilation.source("b.PluginB",
+                    "package b; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                            + "@AutoBind public class PluginB implements a.Ext { @Inject PluginB() {} }");
+
+    @Test
+    void everyModuleOriginatesFromItsPackage() {
+        TestCompilation compilation = TestCompilation.compile(ReproducibilityTest.sources());
+
+        assertEquals(List.of(), compilation.errors);
+        assertEquals(
+                Set.of("a.BarImpl", "a.Ext", "a.ExtA", "a.ExtB", "a.FooImpl", "a.Handler", "a.HandlerA", "a.HandlerB"),
+                compilation.originatingElements.get("a.AutoBindings"));
+        // a.Ext is declared as external multibinding in the package-info of b
+        assertEquals(
+                Set.of("a.Ext", "b", "b.PluginA", "b.SvcImpl"),
+                compilation.originatingElements.get("b.AutoBindings"));
+        assertEquals(
+                compilation.originatingElements.get("b.AutoBindings"),
+                compilation.originatingElements.get("b.AutoBindingsEncapsulated"));
+        assertEquals(
+                compilation.originatingElements.get("b.AutoBindings"),
+                compilation.originatingElements.get("b.AutoBindingsEncapsulatedComponent"));
+    }
+
+    @Test
+    void everyShardOriginatesFromItsModule() {
+        TestCompilation compilation = TestCompilation.compile(ReproducibilityTest.sources(), "dagger.auto.shardSize=2");
+
+        assertEquals(List.of(), compilation.errors);
+        compilation.originatingElements.forEach(
+                (name, elements) -> {
+                    if (name.startsWith("a.")) {
+                        assertEquals(
+                                compilation.originatingElements.get("a.AutoBindings"), elements, name);
+                    }
+                });
+        assertTrue(compilation.sources.size() > 4, "expected shards of a.AutoBindings");
+    }
+
+    @Test
+    void changeInOnePackageOnlyChangesItsModules() {
+        List<JavaFileObject> changed = new ArrayList<>(ReproducibilityTest.sources());
+        changed.add(PLUGIN_B);
+
+        TestCompilation before = TestCompilation.compile(ReproducibilityTest.sources());
+        TestCompilation after = TestCompilation.compile(changed);
+
+        assertEquals(List.of(), after.errors);
+        assertEquals(before.sources.keySet(), after.sources.keySet());
+        assertEquals(before.sources.get("a.AutoBindings"), after.sources.get("a.AutoBindings"));
+        assertEquals(before.originatingElements.get("a.AutoBindings"), after.originatingElements.get("a.AutoBindings"));
+        assertNotEquals(before.sources.get("b.AutoBindingsEncapsulated"), after.sources.get("b.AutoBindingsEncapsulated"));
+        assertTrue(after.originatingElements.get("b.AutoBindings").contains("b.PluginB"));
+        assertTrue(after.originatingElements.entrySet().stream()
+                .filter(entry -> entry.getValue().contains("b.PluginB"))
+                .allMatch(entry -> entry.getKey().startsWith("b.")));
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.azahnen.dagger;
+
+import dagger.internal.codegen.ComponentProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.inject.Provider;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compiles provider maps with the {@link DaggerAutoProcessor} and the Dagger processor and checks
+ * the entries of the resulting component.
+ */
+class ProviderMapTest {
+
+    private static final List<JavaFileObject> SOURCES = List.of(
+            TestCompilation.source("a.Format",
+                    "package a; import com.github.azahnen.dagger.annotations.AutoMultiBind;\n"
+                            + "@AutoMultiBind(value = AutoMultiBind.Type.STRING_MAP, providers = true) public interface Format {}"),
+            TestCompilation.source("a.JsonFormat",
+                    "package a; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                            + "@AutoBind(mapKeyString = \"json\") public class JsonFormat implements Format {"
+                            + " public static int instances; @Inject JsonFormat() { instances++; } }"),
+            TestCompilation.source("b.package-info",
+                    "@AutoModule(encapsulate = true) package b; import com.github.azahnen.dagger.annotations.AutoModule;"),
+            TestCompilation.source("b.XmlFormat",
+                    "package b; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                            + "@AutoBind(mapKeyString = \"xml\") public class XmlFormat implements a.Format {"
+                            + " public static int instances; @Inject XmlFormat() { instances++; } }"),
+            TestCompilation.source("b.Formats", "package b; public interface Formats { Object get(String key); }"),
+            TestCompilation.source("b.FormatRegistry",
+                    "package b; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject; import java.util.Map; import javax.inject.Provider;\n"
+                            + "@AutoBind public class FormatRegistry implements Formats {"
+                            + " private final Map<String, Provider<a.Format>> formats;"
+                            + " @Inject FormatRegistry(Map<String, Provider<a.Format>> formats) { this.formats = formats; }"
+                            + " public Object get(String key) { return formats.get(key).get(); } }"),
+            TestCompilation.source("app.App",
+                    "package app;\n"
+                            + "@jakarta.inject.Singleton @dagger.Component(modules = {a.AutoBindings.class, b.AutoBindings.class})\n"
+                            + "public interface App { java.util.Map<String, javax.inject.Provider<a.Format>> formats(); b.Formats registry(); }"));
+
+    @Test
+    void entriesOfEncapsulatedModulesAreResolvedOnLookup(@TempDir Path classes) throws Exception {
+        assertEquals(List.of(), compile(SOURCES, classes));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] {classes.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> appType = classLoader.loadClass("app.App");
+            Object app = classLoader.loadClass("app.DaggerApp").getMethod("create").invoke(null);
+            Map<?, ?> formats = (Map<?, ?>) appType.getMethod("formats").invoke(app);
+
+            assertEquals(Set.of("json", "xml"), formats.keySet());
+            assertEquals("b.XmlFormat", ((Provider<?>) formats.get("xml")).get().getClass().getName());
+            assertEquals(0, instances(classLoader, "a.JsonFormat"));
+            assertEquals(1, instances(classLoader, "b.XmlFormat"));
+
+            Object registry = appType.getMethod("registry").invoke(app);
+            Object json = classLoader.loadClass("b.Formats").getMethod("get", String.class).invoke(registry, "json");
+
+            assertEquals("a.JsonFormat", json.getClass().getName());
+            assertEquals(1, instances(classLoader, "a.JsonFormat"));
+        }
+    }
+
+    private static int instances(ClassLoader classLoader, String className) throws ReflectiveOperationException {
+        return classLoader.loadClass(className).getField("instances").getInt(null);
+    }
+
+    /**
+     * @return the errors of the compilation
+     */
+    private static List<String> compile(List<JavaFileObject> sources, Path classes) throws IOException {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> arguments = List.of("-d", classes.toString(), "-classpath", System.getProperty("java.class.path"));
+
+        try (StandardJavaFileManager fileManager = javac.getStandardFileManager(diagnostics, null, null)) {
+            JavaCompiler.CompilationTask task = javac.getTask(null, fileManager, diagnostics, arguments, null, sources);
+            task.setProcessors(List.of(new DaggerAutoProcessor(), new ComponentProcessor()));
+            task.call();
+        }
+
+        return diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(Locale.ROOT))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.azahnen.dagger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the processor twice on the same sources and compares the generated sources, which have to be
+ * identical no matter in which order the compiler hands out the annotated elements.
+ */
+class ReproducibilityTest {
+
+    static List<JavaFileObject> sources() {
+        return sources(true);
+    }
+
+    /**
+     * @param encapsulate if false, the module of package b is not encapsulated, which is not
+     *     supported in accumulate mode without other processors
+     */
+    static List<JavaFileObject> sources(boolean encapsulate) {
+        return List.of(
+                TestCompilation.source("a.Foo", "package a; public interface Foo {}"),
+                TestCompilation.source("a.Bar", "package a; public interface Bar {}"),
+                TestCompilation.source("a.FooImpl",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject; import java.util.Set;\n"
+                                + "@AutoBind public class FooImpl implements Foo { @Inject FooImpl(Bar bar, Set<Ext> exts) {} }"),
+                TestCompilation.source("a.BarImpl",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                                + "@AutoBind public class BarImpl implements Bar { @Inject BarImpl() {} }"),
+                TestCompilation.source("a.Ext",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoMultiBind; @AutoMultiBind public interface Ext {}"),
+                TestCompilation.source("a.ExtA",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                                + "@AutoBind public class ExtA implements Ext { @Inject ExtA(Foo foo) {} }"),
+                TestCompilation.source("a.ExtB",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                                + "@AutoBind public class ExtB implements Ext { @Inject ExtB(Bar bar) {} }"),
+                TestCompilation.source("a.Handler",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoMultiBind;\n"
+                                + "@AutoMultiBind(AutoMultiBind.Type.STRING_MAP) public interface Handler {}"),
+                TestCompilation.source("a.HandlerA",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                                + "@AutoBind(mapKeyString = \"a\") public class HandlerA implements Handler { @Inject HandlerA() {} }"),
+                TestCompilation.source("a.HandlerB",
+                        "package a; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                                + "@AutoBind(mapKeyString = \"b\") public class HandlerB implements Handler { @Inject HandlerB() {} }"),
+                TestCompilation.source("b.package-info",
+                        "@AutoModule(encapsulate = " + encapsulate + ", multiBindings = {a.Ext.class})\n"
+                                + "package b; import com.github.azahnen.dagger.annotations.AutoModule;"),
+                TestCompilation.source("b.Svc", "package b; public interface Svc {}"),
+                TestCompilation.source("b.SvcImpl",
+                        "package b; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject; import java.util.Map;\n"
+                                + "@AutoBind public class SvcImpl implements Svc { @Inject SvcImpl(a.Foo foo, Map<String, a.Handler> handlers) {} }"),
+                TestCompilation.source("b.PluginA",
+                        "package b; import com.github.azahnen.dagger.annotations.AutoBind; import jakarta.inject.Inject;\n"
+                                + "@AutoBind public class PluginA implements a.Ext { @Inject PluginA(Svc svc) {} }"));
+    }
+
+    static List<JavaFileObject> reversed(List<JavaFileObject> sources) {
+        List<JavaFileObject> reversed = new ArrayList<>(sources);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+
+    @Test
+    void sameOutputForReversedSources() {
+        TestCompilation first = TestCompilation.compile(sources());
+        TestCompilation second = TestCompilation.compile(reversed(sources()));
+
+        assertEquals(List.of(), first.errors);
+        assertFalse(first.sources.isEmpty());
+        assertEquals(first.sources, second.sources);
+        assertEquals(first.originatingElements, second.originatingElements);
+    }
+
+    @Test
+    void sameOutputForReversedSourcesWhenAccumulating() {
+        TestCompilation first = TestCompilation.compile(sources(false), "dagger.auto.accumulate=true");
+        TestCompilation second = TestCompilation.compile(reversed(sources(false)), "dagger.auto.accumulate=true");
+
+        assertEquals(List.of(), first.errors);
+        assertFalse(first.sources.isEmpty());
+        assertEquals(first.sources, second.sources);
+    }
+
+    @Test
+    void sameOutputWhenRenderedInParallel() {
+        TestCompilation sequential = TestCompilation.compile(sources());
+        TestCompilation parallel = TestCompilation.compile(sources(), "dagger.auto.parallelism=4");
+
+        assertEquals(sequential.sources, parallel.sources);
+    }
+
+    /**
+     * The second pass visits the indexed elements in reverse order, so this fails if the bindings of
+     * a module are not sorted after parsing, see {@link DaggerAutoParser#BINDING_ORDER}.
+     */
+    @Test
+    void verifyReproducibleReportsNoErrors() {
+        TestCompilation compilation = TestCompilation.compile(
+                sources(), "dagger.auto.verifyReproducible=true", "dagger.auto.dispatchers=true");
+
+        assertEquals(List.of(), compilation.errors);
+        assertFalse(compilation.sources.isEmpty());
+    }
+
+    @Test
+    void verifyReproducibleIsNotCountedInStats(@TempDir Path directory) throws IOException {
+        Path once = directory.resolve("once.json");
+        Path verified = directory.resolve("verified.json");
+
+        TestCompilation.compile(sources(), "dagger.auto.stats=" + once);
+        TestCompilation.compile(sources(), "dagger.auto.stats=" + verified, "dagger.auto.verifyReproducible=true");
+
+        assertEquals(counts(once), counts(verified));
+    }
+
+    @Test
+    void verifyReproducibleIsIgnoredWhenAccumulating() {
+        TestCompilation compilation = TestCompilation.compile(
+                sources(false), "dagger.auto.verifyReproducible=true", "dagger.auto.accumulate=true");
+
+        assertEquals(List.of(), compilation.errors);
+        assertTrue(
+                compilation.warnings.contains(
+                        "Option dagger.auto.verifyReproducible is ignored together with dagger.auto.accumulate"),
+                String.join("\n", compilation.warnings));
+    }
+
+    /**
+     * @return the lines of the stats report with counts, which unlike the timings do not differ
+     *     between runs
+     */
+    private static List<String> counts(Path report) throws IOException {
+        return Files.readAllLines(report).stream()
+                .filter(line -> line.matches("\\s*\"(typesCalls|elementsCalls|libraryCache\\w+|\\w+Bindings)\": .*"))
+                .collect(Collectors.toList());
+    }
+}
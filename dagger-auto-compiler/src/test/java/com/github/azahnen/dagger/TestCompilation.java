@@ -0,0 +1,280 @@
+package com.github.azahnen.dagger;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the {@link DaggerAutoProcessor} on the given sources with the system compiler and {@code
+ * -proc:only}. The generated sources and the originating elements the processor passes to the
+ * {@link Filer} are kept in memory.
+ */
+class TestCompilation {
+
+    /**
+     * Generated sources by qualified name.
+     */
+    final Map<String, String> sources;
+
+    /**
+     * Names of the originating elements of the generated sources by qualified name.
+     */
+    final Map<String, Set<String>> originatingElements;
+
+    final List<String> errors;
+
+    final List<String> warnings;
+
+    private TestCompilation() {
+        this.sources = new TreeMap<>();
+        this.originatingElements = new TreeMap<>();
+        this.errors = new ArrayList<>();
+        this.warnings = new ArrayList<>();
+    }
+
+    static JavaFileObject source(String qualifiedName, String content) {
+        return new SimpleJavaFileObject(
+                URI.create("string:///" + qualifiedName.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return content;
+            }
+        };
+    }
+
+    static TestCompilation compile(List<JavaFileObject> sources, String... options) {
+        return compile(sources, List.of(), options);
+    }
+
+    /**
+     * @param processors other processors that run in the same compilation
+     */
+    static TestCompilation compile(List<JavaFileObject> sources, List<Processor> processors, String... options) {
+        return compile(sources, processors, List.of(), options);
+    }
+
+    /**
+     * @param processors other processors that run in the same compilation
+     * @param classpath entries that are added to the classpath of the test, e.g. jars
+     */
+    static TestCompilation compile(
+            List<JavaFileObject> sources, List<Processor> processors, List<Path> classpath, String... options) {
+        TestCompilation compilation = new TestCompilation();
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        String fullClasspath = Stream.concat(classpath.stream().map(Path::toString), Stream.of(System.getProperty("java.class.path")))
+                .collect(Collectors.joining(File.pathSeparator));
+        List<String> arguments = new ArrayList<>(List.of("-proc:only", "-classpath", fullClasspath));
+
+        Arrays.stream(options).map(option -> "-A" + option).forEach(arguments::add);
+
+        try (StandardJavaFileManager standardFileManager = javac.getStandardFileManager(diagnostics, null, null);
+             JavaFileManager fileManager = compilation.new Outputs(standardFileManager)) {
+            JavaCompiler.CompilationTask task = javac.getTask(null, fileManager, diagnostics, arguments, null, sources);
+            List<Processor> allProcessors = new ArrayList<>(processors);
+            allProcessors.add(0, compilation.new RecordingProcessor());
+            task.setProcessors(allProcessors);
+            task.call();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(Locale.ROOT))
+                .forEach(compilation.errors::add);
+        diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.WARNING
+                        || diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING)
+                .map(diagnostic -> diagnostic.getMessage(Locale.ROOT))
+                .forEach(compilation.warnings::add);
+
+        return compilation;
+    }
+
+    /**
+     * Passes a {@link Filer} to the processor that records the originating elements.
+     */
+    private class RecordingProcessor extends DaggerAutoProcessor {
+
+        @Override
+        public synchronized void init(ProcessingEnvironment processingEnv) {
+            super.init(new RecordingEnvironment(processingEnv));
+        }
+    }
+
+    private class RecordingEnvironment implements ProcessingEnvironment {
+
+        private final ProcessingEnvironment delegate;
+        private final Filer filer;
+
+        RecordingEnvironment(ProcessingEnvironment delegate) {
+            this.delegate = delegate;
+            this.filer = new RecordingFiler(delegate.getFiler());
+        }
+
+        @Override
+        public Map<String, String> getOptions() {
+            return delegate.getOptions();
+        }
+
+        @Override
+        public Messager getMessager() {
+            return delegate.getMessager();
+        }
+
+        @Override
+        public Filer getFiler() {
+            return filer;
+        }
+
+        @Override
+        public Elements getElementUtils() {
+            return delegate.getElementUtils();
+        }
+
+        @Override
+        public Types getTypeUtils() {
+            return delegate.getTypeUtils();
+        }
+
+        @Override
+        public SourceVersion getSourceVersion() {
+            return delegate.getSourceVersion();
+        }
+
+        @Override
+        public Locale getLocale() {
+            return delegate.getLocale();
+        }
+    }
+
+    private class RecordingFiler implements Filer {
+
+        private final Filer delegate;
+
+        RecordingFiler(Filer delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements) throws IOException {
+            TestCompilation.this.originatingElements.put(
+                    name.toString(),
+                    Arrays.stream(originatingElements)
+                            .map(Element::toString)
+                            .collect(Collectors.toCollection(TreeSet::new)));
+
+            return delegate.createSourceFile(name, originatingElements);
+        }
+
+        @Override
+        public JavaFileObject createClassFile(CharSequence name, Element... originatingElements) throws IOException {
+            return delegate.createClassFile(name, originatingElements);
+        }
+
+        @Override
+        public FileObject createResource(
+                JavaFileManager.Location location, CharSequence moduleAndPkg, CharSequence relativeName,
+                Element... originatingElements) throws IOException {
+            return delegate.createResource(location, moduleAndPkg, relativeName, originatingElements);
+        }
+
+        @Override
+        public FileObject getResource(
+                JavaFileManager.Location location, CharSequence moduleAndPkg, CharSequence relativeName) throws IOException {
+            return delegate.getResource(location, moduleAndPkg, relativeName);
+        }
+    }
+
+    /**
+     * Keeps the generated sources in memory, so that the compiler can parse them in the next round.
+     * Everything else is discarded.
+     */
+    private class Outputs extends ForwardingJavaFileManager<JavaFileManager> {
+
+        Outputs(JavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(
+                Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return new Output(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind, className);
+        }
+
+        @Override
+        public FileObject getFileForOutput(
+                Location location, String packageName, String relativeName, FileObject sibling) {
+            String path = packageName.isEmpty() ? relativeName : packageName.replace('.', '/') + "/" + relativeName;
+
+            return new Output(URI.create("mem:///" + path), JavaFileObject.Kind.OTHER, null);
+        }
+    }
+
+    private class Output extends SimpleJavaFileObject {
+
+        private final String className;
+
+        Output(URI uri, Kind kind, String className) {
+            super(uri, kind);
+            this.className = className;
+        }
+
+        @Override
+        public Writer openWriter() {
+            return new StringWriter() {
+                @Override
+                public void close() {
+                    if (getKind() == Kind.SOURCE) {
+                        sources.put(className, toString());
+                    }
+                }
+            };
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return sources.getOrDefault(className, "");
+        }
+    }
+}
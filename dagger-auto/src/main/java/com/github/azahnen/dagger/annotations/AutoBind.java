@@ -11,4 +11,10 @@ public @interface AutoBind {
   String mapKeyString() default "";
 
   Class<?> mapKeyClass() default Void.class;
+
+  /** The name of a constant of the {@link AutoMultiBind#enumKey()} of an {@code ENUM_MAP}. */
+  String mapKeyEnum() default "";
+
+  /** Only applies to a {@code LIST}, contributions with lower priorities come first. */
+  int priority() default 0;
 }
@@ -2,11 +2,34 @@ package com.github.azahnen.dagger.annotations;
 
 public @interface AutoMultiBind {
 
-  enum Type {SET, STRING_MAP, CLASS_MAP}
+  /**
+   * {@code LAZY_SET} is injected as {@link com.github.azahnen.dagger.collections.LazySet}, which
+   * only constructs an element when an iteration reaches it. The set is a singleton, so every
+   * element is constructed at most once per component. {@link #lazy()} does not apply.
+   *
+   * <p>{@code ENUM_MAP} is injected as {@code Map<E, V>} backed by an {@link java.util.EnumMap},
+   * see {@link com.github.azahnen.dagger.collections.EnumMaps}. The enum type {@code E} is set with
+   * {@link #enumKey()}, the keys of the contributions with {@link AutoBind#mapKeyEnum()}.
+   *
+   * <p>{@code LIST} is injected as an immutable {@code List<T>}, ordered by {@link
+   * AutoBind#priority()} and then by the qualified name of the implementation, see {@link
+   * com.github.azahnen.dagger.collections.PriorityList}.
+   */
+  enum Type {SET, STRING_MAP, CLASS_MAP, LAZY_SET, ENUM_MAP, LIST}
 
   Type value() default Type.SET;
 
   boolean lazy() default true;
 
+  /**
+   * Only applies to {@code STRING_MAP} and {@code CLASS_MAP}. If true, the map is passed into
+   * encapsulated modules as {@code Map<K, javax.inject.Provider<V>>} and every entry is constructed
+   * on first lookup of its key. Otherwise encapsulated modules do not support these maps.
+   */
+  boolean providers() default false;
+
+  /** Only applies to {@code ENUM_MAP}, the enum type of the keys. */
+  Class<?> enumKey() default Void.class;
+
   Class<?>[] exclude() default {};
 }
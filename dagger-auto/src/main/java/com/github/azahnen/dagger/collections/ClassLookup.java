@@ -0,0 +1,96 @@
+package com.github.azahnen.dagger.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Lookup of the values of a multibinding of type {@code CLASS_MAP} by the runtime class of an
+ * object. A class is resolved to the value of the class itself or of its most specific key
+ * supertype once, the result is cached in a {@link ClassValue}, so repeated lookups for the same
+ * class neither walk the hierarchy nor hash into the map.
+ *
+ * <p>Keys are tried in an order where every key comes before its supertypes, so an exact match
+ * always wins. If a class has multiple unrelated key supertypes, e.g. two interfaces, the deeper one
+ * in the type hierarchy wins, then the one that was given first.
+ *
+ * <p>Instances are immutable and safe to use from multiple threads.
+ */
+public final class ClassLookup<V> {
+
+  private final Class<?>[] keys;
+  private final Object[] values;
+  private final ClassValue<Object> resolved;
+
+  private ClassLookup(List<Class<?>> keys, Map<Class<?>, ? extends V> map) {
+    this.keys = keys.toArray(new Class<?>[0]);
+    this.values = keys.stream().map(map::get).toArray();
+    this.resolved =
+        new ClassValue<>() {
+          @Override
+          protected Object computeValue(Class<?> type) {
+            return resolve(type);
+          }
+        };
+  }
+
+  /**
+   * @param map the multibinding
+   * @param order keys of the map ordered from the most specific, usually precomputed from the key
+   *     hierarchy at compile time. Keys of the map that are missing are inserted before their first
+   *     supertype, keys that are not in the map are ignored.
+   * @return a lookup of the values of the given map
+   */
+  public static <V> ClassLookup<V> of(Map<Class<?>, ? extends V> map, Class<?>... order) {
+    List<Class<?>> keys = new ArrayList<>();
+
+    for (Class<?> key : order) {
+      if (map.containsKey(key) && !keys.contains(key)) {
+        keys.add(key);
+      }
+    }
+    for (Class<?> key : map.keySet()) {
+      if (!keys.contains(key)) {
+        keys.add(indexOfFirstSupertype(keys, key), key);
+      }
+    }
+
+    return new ClassLookup<>(keys, map);
+  }
+
+  private static int indexOfFirstSupertype(List<Class<?>> keys, Class<?> key) {
+    for (int i = 0; i < keys.size(); i++) {
+      if (keys.get(i).isAssignableFrom(key)) {
+        return i;
+      }
+    }
+
+    return keys.size();
+  }
+
+  /**
+   * @return the value for the given class or its most specific key supertype, null if there is none
+   */
+  @SuppressWarnings("unchecked")
+  public V get(Class<?> type) {
+    return (V) resolved.get(type);
+  }
+
+  /**
+   * @return the value for the runtime class of the given instance, see {@link #get(Class)}
+   */
+  public V getFor(Object instance) {
+    return get(Objects.requireNonNull(instance).getClass());
+  }
+
+  private Object resolve(Class<?> type) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i].isAssignableFrom(type)) {
+        return values[i];
+      }
+    }
+
+    return null;
+  }
+}
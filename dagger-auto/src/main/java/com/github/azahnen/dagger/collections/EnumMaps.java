@@ -0,0 +1,38 @@
+package com.github.azahnen.dagger.collections;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Creates the maps of multibindings of type {@code ENUM_MAP}. The contributions are collected as
+ * entries and copied into an {@link EnumMap}, which stores the values in an array indexed by the
+ * ordinal of the key, so lookups neither hash nor box.
+ */
+public final class EnumMaps {
+
+  private EnumMaps() {}
+
+  /**
+   * @return an unmodifiable map of the given entries
+   * @throws IllegalStateException if two entries have the same key
+   */
+  public static <E extends Enum<E>, V> Map<E, V> of(Class<E> keyType, Set<Map.Entry<E, V>> entries) {
+    EnumMap<E, V> map = new EnumMap<>(keyType);
+
+    for (Map.Entry<E, V> entry : entries) {
+      V previous = map.putIfAbsent(entry.getKey(), Objects.requireNonNull(entry.getValue()));
+
+      if (Objects.nonNull(previous)) {
+        throw new IllegalStateException(
+            String.format(
+                "Duplicate key %s for %s: %s and %s",
+                entry.getKey(), keyType.getName(), previous, entry.getValue()));
+      }
+    }
+
+    return Collections.unmodifiableMap(map);
+  }
+}
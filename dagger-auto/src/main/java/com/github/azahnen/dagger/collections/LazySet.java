@@ -0,0 +1,117 @@
+package com.github.azahnen.dagger.collections;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Immutable set of the contributions to a multibinding of type {@code LAZY_SET}. An element is
+ * only constructed when an iteration reaches it and is cached afterwards, so every element is
+ * constructed at most once per instance. {@link #size()} and {@link #isEmpty()} do not construct
+ * any elements, operations like {@link #contains(Object)} that iterate construct the elements up to
+ * the match.
+ *
+ * <p>Instances are safe to use from multiple threads. If two threads reach the same element for the
+ * first time concurrently, both might construct it, but only one of the instances is kept.
+ */
+public final class LazySet<T> extends AbstractSet<T> {
+
+  private final List<Element<T>> elements;
+  private final AtomicReferenceArray<T> values;
+
+  private LazySet(List<Element<T>> elements) {
+    this.elements = elements;
+    this.values = new AtomicReferenceArray<>(elements.size());
+  }
+
+  /** A single contribution, which constructs its element on request. */
+  public static final class Element<T> {
+
+    private final Supplier<? extends T> supplier;
+
+    private Element(Supplier<? extends T> supplier) {
+      this.supplier = supplier;
+    }
+  }
+
+  /**
+   * @return a contribution that constructs its element with the given supplier, usually the {@code
+   *     Provider} of the implementation
+   */
+  public static <T> Element<T> element(Supplier<? extends T> supplier) {
+    return new Element<>(Objects.requireNonNull(supplier));
+  }
+
+  /**
+   * @return a set of the given contributions in their iteration order
+   */
+  public static <T> LazySet<T> of(Set<Element<T>> elements) {
+    return new LazySet<>(List.copyOf(elements));
+  }
+
+  /**
+   * @return the number of elements that were constructed so far
+   */
+  public int constructed() {
+    int constructed = 0;
+
+    for (int i = 0; i < values.length(); i++) {
+      if (Objects.nonNull(values.get(i))) {
+        constructed++;
+      }
+    }
+
+    return constructed;
+  }
+
+  @Override
+  public int size() {
+    return elements.size();
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new Iterator<>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < elements.size();
+      }
+
+      @Override
+      public T next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        return get(next++);
+      }
+    };
+  }
+
+  private T get(int index) {
+    T value = values.get(index);
+
+    if (Objects.isNull(value)) {
+      T constructed =
+          Objects.requireNonNull(
+              elements.get(index).supplier.get(), "Lazy set elements must not be null");
+
+      value = values.compareAndSet(index, null, constructed) ? constructed : values.get(index);
+    }
+
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    // does not construct the elements just for logging
+    return String.format("LazySet[%d of %d constructed]", constructed(), size());
+  }
+}
@@ -0,0 +1,99 @@
+package com.github.azahnen.dagger.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Creates the lists of multibindings of type {@code LIST}. The contributions of every module are
+ * sorted at compile time by priority and then by the name of their implementation and collected as
+ * a single run. A list with a single run, e.g. if all contributions are declared in the same
+ * package, is created without comparing anything, the runs of multiple modules are merged. The
+ * list itself is immutable, so consumers neither copy nor sort.
+ */
+public final class PriorityList {
+
+  private PriorityList() {}
+
+  /** The contributions of a single module, ordered by priority and then by name. */
+  public static final class Run<T> {
+
+    private final int[] priorities;
+    private final String[] names;
+    private final List<T> values;
+
+    private Run(int[] priorities, String[] names, List<T> values) {
+      this.priorities = priorities;
+      this.names = names;
+      this.values = values;
+    }
+
+    private int compare(int i, Run<T> other, int j) {
+      int byPriority = Integer.compare(priorities[i], other.priorities[j]);
+
+      return byPriority != 0 ? byPriority : names[i].compareTo(other.names[j]);
+    }
+  }
+
+  /**
+   * @return the given contributions, which have to be ordered by ascending priority and then by
+   *     name, usually the qualified name of the implementation
+   * @throws IllegalArgumentException if the number of priorities, names and values differs
+   */
+  @SafeVarargs
+  public static <T> Run<T> run(int[] priorities, String[] names, T... values) {
+    if (priorities.length != values.length || names.length != values.length) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Expected %d priorities and names, found %d and %d",
+              values.length, priorities.length, names.length));
+    }
+    List<T> list = new ArrayList<>(values.length);
+    for (int i = 0; i < values.length; i++) {
+      Objects.requireNonNull(names[i]);
+      list.add(Objects.requireNonNull(values[i]));
+    }
+
+    return new Run<>(priorities, names, Collections.unmodifiableList(list));
+  }
+
+  /**
+   * @return an immutable list of the values of the given runs, ordered by ascending priority and
+   *     then by name
+   */
+  public static <T> List<T> of(Set<Run<T>> runs) {
+    if (runs.size() == 1) {
+      return runs.iterator().next().values;
+    }
+
+    List<Run<T>> pending = new ArrayList<>(runs.size());
+    for (Run<T> run : runs) {
+      if (!run.values.isEmpty()) {
+        pending.add(run);
+      }
+    }
+    int[] positions = new int[pending.size()];
+    List<T> values = new ArrayList<>();
+
+    while (!pending.isEmpty()) {
+      int next = 0;
+      for (int i = 1; i < pending.size(); i++) {
+        if (pending.get(i).compare(positions[i], pending.get(next), positions[next]) < 0) {
+          next = i;
+        }
+      }
+
+      Run<T> run = pending.get(next);
+      values.add(run.values.get(positions[next]++));
+
+      if (positions[next] == run.values.size()) {
+        pending.remove(next);
+        System.arraycopy(positions, next + 1, positions, next, pending.size() - next);
+      }
+    }
+
+    return List.copyOf(values);
+  }
+}
@@ -0,0 +1,139 @@
+package com.github.azahnen.dagger.counters;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Provision counters of the generated modules, used if the sources are generated with the option
+ * {@code dagger.auto.provisionCounters}. Every generated module registers one counter per binding
+ * when it is first used, every provision of the binding increments its counter. Counting does not
+ * allocate, snapshots are only taken on request.
+ */
+public final class ProvisionCounters {
+
+  private static final List<Registration> REGISTRATIONS = new CopyOnWriteArrayList<>();
+
+  private ProvisionCounters() {}
+
+  /** The provision count of a binding. */
+  public static final class Count {
+
+    private final String module;
+    private final String binding;
+    private final long count;
+
+    Count(String module, String binding, long count) {
+      this.module = module;
+      this.binding = binding;
+      this.count = count;
+    }
+
+    public String getModule() {
+      return module;
+    }
+
+    /**
+     * @return the bound interface, for multibinding contributions also the implementation
+     */
+    public String getBinding() {
+      return binding;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s %s: %d", module, binding, count);
+    }
+  }
+
+  private static final class Registration {
+    final String module;
+    final String[] bindings;
+    final LongAdder[] counters;
+
+    Registration(String module, String[] bindings) {
+      this.module = module;
+      this.bindings = bindings;
+      this.counters = new LongAdder[bindings.length];
+      for (int i = 0; i < counters.length; i++) {
+        counters[i] = new LongAdder();
+      }
+    }
+  }
+
+  /**
+   * Called by generated code.
+   *
+   * @return a counter for every given binding, in the same order
+   */
+  public static LongAdder[] register(String module, String... bindings) {
+    Registration registration = new Registration(module, bindings);
+    REGISTRATIONS.add(registration);
+
+    return registration.counters;
+  }
+
+  /**
+   * Called by generated code for every provision.
+   *
+   * @return the given instance
+   */
+  public static <T> T count(LongAdder counter, T instance) {
+    counter.increment();
+    return instance;
+  }
+
+  /**
+   * @return the bindings with the highest provision counts, in descending order. Counts of the same
+   *     binding from modules that are loaded by different class loaders are summed up.
+   */
+  public static List<Count> top(int limit) {
+    return snapshot().stream()
+        .sorted(Comparator.comparingLong(Count::getCount).reversed())
+        .limit(Math.max(limit, 0))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * @return the provision counts of all bindings in registration order
+   */
+  public static List<Count> snapshot() {
+    Map<String, Count> counts = new LinkedHashMap<>();
+
+    for (Registration registration : REGISTRATIONS) {
+      for (int i = 0; i < registration.bindings.length; i++) {
+        String key = registration.module + ' ' + registration.bindings[i];
+        long count = registration.counters[i].sum();
+        Count previous = counts.get(key);
+
+        counts.put(
+            key,
+            new Count(
+                registration.module,
+                registration.bindings[i],
+                Objects.isNull(previous) ? count : previous.count + count));
+      }
+    }
+
+    return new ArrayList<>(counts.values());
+  }
+
+  /** Resets all counters, e.g. to measure a time window. */
+  public static void reset() {
+    for (Registration registration : REGISTRATIONS) {
+      for (LongAdder counter : registration.counters) {
+        counter.reset();
+      }
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.github.azahnen.dagger.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Creation of the component of an encapsulated module by its wrapper module.
+ */
+@Name("com.github.azahnen.dagger.ComponentCreation")
+@Label("Component Creation")
+@Description("Creation of the component of an encapsulated module")
+@Category("Dagger Auto")
+final class ComponentCreationEvent extends jdk.jfr.Event {
+
+  @Label("Module")
+  String module;
+
+  @Label("Component")
+  String component;
+
+  ComponentCreationEvent() {}
+}
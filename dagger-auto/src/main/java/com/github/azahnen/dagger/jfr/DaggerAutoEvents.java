@@ -0,0 +1,57 @@
+package com.github.azahnen.dagger.jfr;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Records JFR events for generated code, used if the sources are generated with the option {@code
+ * dagger.auto.jfrEvents}. If the events are not enabled in a recording, the given computations are
+ * just called.
+ *
+ * <p>On the module path, {@code jdk.jfr} has to be added to the module graph, e.g. with {@code
+ * --add-modules jdk.jfr}. The event classes are not part of the API, so the module only requires
+ * {@code jdk.jfr} statically and does not expose it to its clients.
+ */
+public final class DaggerAutoEvents {
+
+  private DaggerAutoEvents() {}
+
+  public static <T> T componentCreation(String module, String component, Supplier<T> creation) {
+    ComponentCreationEvent event = new ComponentCreationEvent();
+
+    if (!event.isEnabled()) {
+      return creation.get();
+    }
+
+    event.begin();
+    try {
+      return creation.get();
+    } finally {
+      event.module = module;
+      event.component = component;
+      event.commit();
+    }
+  }
+
+  public static <T extends Collection<?>> T multiBinding(
+      String module, String binding, Supplier<T> materialization) {
+    MultiBindingEvent event = new MultiBindingEvent();
+
+    if (!event.isEnabled()) {
+      return materialization.get();
+    }
+
+    event.begin();
+    T elements = null;
+    try {
+      elements = materialization.get();
+      return elements;
+    } finally {
+      event.module = module;
+      event.binding = binding;
+      event.elementCount = Objects.isNull(elements) ? -1 : elements.size();
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.github.azahnen.dagger.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Materialization of a multibinding that is passed into an encapsulated module, including the
+ * first {@code Lazy.get()} for lazy multibindings.
+ */
+@Name("com.github.azahnen.dagger.MultiBinding")
+@Label("Multibinding Materialization")
+@Description("Materialization of a multibinding that is passed into an encapsulated module")
+@Category("Dagger Auto")
+final class MultiBindingEvent extends jdk.jfr.Event {
+
+  @Label("Module")
+  String module;
+
+  @Label("Binding")
+  String binding;
+
+  @Label("Element Count")
+  int elementCount;
+
+  MultiBindingEvent() {}
+}
@@ -1,4 +1,9 @@
 module com.github.azahnen.dagger {
+  requires static jdk.jfr;
+
   exports com.github.azahnen.dagger.annotations;
+  exports com.github.azahnen.dagger.collections;
+  exports com.github.azahnen.dagger.counters;
+  exports com.github.azahnen.dagger.jfr;
   exports javax.inject;
 }